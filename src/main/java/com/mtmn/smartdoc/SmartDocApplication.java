@@ -3,11 +3,13 @@ package com.mtmn.smartdoc;
 import io.github.cdimascio.dotenv.Dotenv;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @author charmingdaidai
  */
 @SpringBootApplication
+@EnableScheduling
 public class SmartDocApplication {
 
     public static void main(String[] args) {
@@ -1,6 +1,10 @@
 package com.mtmn.smartdoc.aspect;
 
+import com.mtmn.smartdoc.utils.SseUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -8,22 +12,58 @@ import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
 
-import java.util.Arrays;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
- * REST API 日志切面
- * 用于记录所有 REST API 的请求与响应信息
+ * REST API 日志与指标切面
+ * 为每个接口记录延迟直方图；流式（Flux）接口分别记录首个模型输出到达时间（TTFB）和流结束时间（TTLB），
+ * 而不是只记录返回 Flux 的耗时。日志按比例采样，慢请求总是记录，不再序列化请求参数
  * @author charmingdaidai
  */
 @Aspect
 @Component
 @Log4j2
+@RequiredArgsConstructor
 public class RestApiLogAspect {
 
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 每个接口方法的指标，首次调用时创建，之后的请求不再构建标签
+     */
+    private final Map<Method, EndpointMeters> endpointMeters = new ConcurrentHashMap<>();
+
+    /**
+     * 问答准入控制发出的状态消息
+     */
+    private static final String STATUS_QUEUED = "queued";
+    private static final String STATUS_BUSY = "busy";
+
+    private static final String ADMISSION_IMMEDIATE = "immediate";
+    private static final String ADMISSION_QUEUED = "queued";
+
+    @Value("${api.metrics.log-sample-rate:0.01}")
+    private double logSampleRate;
+
+    @Value("${api.metrics.slow-threshold:2s}")
+    private Duration slowThreshold;
+
     /**
      * 定义切点：所有 controller 包下的方法
      */
@@ -32,40 +72,41 @@ public class RestApiLogAspect {
     }
 
     /**
-     * 环绕通知：记录请求开始、结束时间以及请求参数和响应结果
+     * 环绕通知：记录接口延迟，按采样记录请求日志
+     *
+     * 实现思路：
+     * 1. 普通接口：方法返回时记录延迟，异常时以 error 结果记录后重新抛出
+     * 2. Flux 接口：在返回的流上挂接回调，第一个非状态消息（模型输出或检索结果）到达时记录 TTFB，
+     *    流完成、出错或被取消时记录 TTLB；排队（queued）和被拒绝（busy）的请求单独打标签，
+     *    排队提示不计入 TTFB，被拒绝的请求不记录 TTFB
+     * 3. 日志只在命中采样或超过慢请求阈值时记录，未命中时不获取请求信息、不拼接字符串
      */
     @Around("apiPointcut()")
     public Object logAroundApi(ProceedingJoinPoint joinPoint) throws Throwable {
-        long startTime = System.currentTimeMillis();
-        
-        // 获取请求信息
-        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-        if (attributes != null) {
-            HttpServletRequest request = attributes.getRequest();
-            
-            // 记录HTTP方法、URL和IP地址
-            log.info("请求开始 - 方法: {}, URL: {}, IP: {}, 类方法: {}.{}",
-                    request.getMethod(),
-                    request.getRequestURL().toString(),
-                    request.getRemoteAddr(),
-                    joinPoint.getSignature().getDeclaringTypeName(),
-                    joinPoint.getSignature().getName());
-            
-            // 记录请求参数，但不记录敏感信息
-            String params = Arrays.toString(joinPoint.getArgs());
-            if (params.contains("password")) {
-                params = "包含敏感信息，不记录详细参数";
-            }
-            log.debug("请求参数: {}", params);
+        long startTime = System.nanoTime();
+        EndpointMeters meters = endpointMeters.computeIfAbsent(
+                ((MethodSignature) joinPoint.getSignature()).getMethod(), this::createMeters);
+
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            meters.error().record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+
+        if (result instanceof Flux<?> flux && meters.stream() != null) {
+            // 流在请求线程返回后才开始输出，请求信息需要提前取出
+            String uri = shouldSample() ? requestUri() : null;
+            return instrument(flux, meters, startTime, uri);
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        meters.success().record(elapsed, TimeUnit.NANOSECONDS);
+        if (elapsed >= slowThreshold.toNanos() || shouldSample()) {
+            log.info("请求结束 - 接口: {}, URL: {}, 执行时间: {}ms",
+                    meters.name(), requestUri(), TimeUnit.NANOSECONDS.toMillis(elapsed));
         }
-        
-        // 执行方法，获取返回值
-        Object result = joinPoint.proceed();
-        
-        // 计算执行时间
-        long executionTime = System.currentTimeMillis() - startTime;
-        log.info("请求结束 - 执行时间: {}ms", executionTime);
-        
         return result;
     }
 
@@ -79,4 +120,126 @@ public class RestApiLogAspect {
                 joinPoint.getSignature().getName(),
                 e.getMessage());
     }
-}
\ No newline at end of file
+
+    private <T> Flux<T> instrument(Flux<T> flux, EndpointMeters meters, long startTime, String sampledUri) {
+        StreamState state = new StreamState();
+        return flux
+                .doOnNext(item -> {
+                    if (state.firstOutput) {
+                        return;
+                    }
+                    String status = item instanceof String message ? SseUtil.statusOf(message) : null;
+                    if (status == null) {
+                        state.firstOutput = true;
+                        if (!state.rejected) {
+                            meters.stream().ttfb(state.queued)
+                                    .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                        }
+                    } else if (STATUS_QUEUED.equals(status)) {
+                        state.queued = true;
+                    } else if (STATUS_BUSY.equals(status)) {
+                        state.rejected = true;
+                    }
+                })
+                .doFinally(signal -> {
+                    long elapsed = System.nanoTime() - startTime;
+                    String outcome = state.rejected ? "rejected" : switch (signal) {
+                        case ON_ERROR -> "error";
+                        case CANCEL -> "cancelled";
+                        default -> "success";
+                    };
+                    meters.stream().ttlb(outcome, state.queued).record(elapsed, TimeUnit.NANOSECONDS);
+                    if (sampledUri != null || (elapsed >= slowThreshold.toNanos() && signal != SignalType.CANCEL)) {
+                        log.info("流式请求结束 - 接口: {}, URL: {}, 结果: {}, 排队: {}, 总时间: {}ms",
+                                meters.name(), sampledUri, outcome, state.queued, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                    }
+                });
+    }
+
+    private boolean shouldSample() {
+        return logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate;
+    }
+
+    private static String requestUri() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpServletRequest request = servletAttributes.getRequest();
+            return request.getMethod() + " " + request.getRequestURI();
+        }
+        return null;
+    }
+
+    private EndpointMeters createMeters(Method method) {
+        String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        Timer success = latency("smartdoc.api.latency", name, "success", Duration.ofMinutes(1));
+        Timer error = latency("smartdoc.api.latency", name, "error", Duration.ofMinutes(1));
+        if (!Flux.class.isAssignableFrom(method.getReturnType())) {
+            return new EndpointMeters(name, success, error, null);
+        }
+        // 只为流式接口注册 TTFB/TTLB，避免普通接口导出空的直方图
+        Map<String, Timer> ttlb = new HashMap<>();
+        for (String admission : List.of(ADMISSION_IMMEDIATE, ADMISSION_QUEUED)) {
+            for (String outcome : List.of("success", "error", "cancelled", "rejected")) {
+                ttlb.put(outcome + ":" + admission,
+                        streamLatency("smartdoc.api.stream.ttlb", name, outcome, admission, Duration.ofMinutes(30)));
+            }
+        }
+        return new EndpointMeters(name, success, error, new StreamMeters(
+                streamLatency("smartdoc.api.stream.ttfb", name, "success", ADMISSION_IMMEDIATE, Duration.ofMinutes(1)),
+                streamLatency("smartdoc.api.stream.ttfb", name, "success", ADMISSION_QUEUED, Duration.ofMinutes(1)),
+                ttlb));
+    }
+
+    /**
+     * 延迟直方图：导出 Prometheus 桶，可在服务端按任意接口聚合分位数
+     */
+    private Timer latency(String metric, String endpoint, String outcome, Duration max) {
+        return Timer.builder(metric)
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(max)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 流式接口的延迟直方图，admission 标签区分直接执行和排队后执行的请求
+     */
+    private Timer streamLatency(String metric, String endpoint, String outcome, String admission, Duration max) {
+        return Timer.builder(metric)
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .tag("admission", admission)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(max)
+                .register(meterRegistry);
+    }
+
+    private record EndpointMeters(String name, Timer success, Timer error, StreamMeters stream) {
+    }
+
+    /**
+     * 流式接口的指标，ttlb 以 "outcome:admission" 为键
+     */
+    private record StreamMeters(Timer ttfbImmediate, Timer ttfbQueued, Map<String, Timer> ttlb) {
+
+        Timer ttfb(boolean queued) {
+            return queued ? ttfbQueued : ttfbImmediate;
+        }
+
+        Timer ttlb(String outcome, boolean queued) {
+            return ttlb.get(outcome + ":" + (queued ? ADMISSION_QUEUED : ADMISSION_IMMEDIATE));
+        }
+    }
+
+    /**
+     * 单个流的状态，Reactor 保证同一个流的信号依次到达
+     */
+    private static class StreamState {
+        private boolean firstOutput;
+        private boolean queued;
+        private boolean rejected;
+    }
+}
@@ -19,6 +19,7 @@ import org.apache.tika.sax.BodyContentHandler;
 import org.xml.sax.ContentHandler;
 
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -158,6 +159,24 @@ public class ApacheTikaDocumentParser implements DocumentParser {
         }
     }
 
+    /**
+     * 解析文件并把提取的文本直接写入{@code writer}，不在内存中保留完整文本。
+     * 适用于大文件：调用方可以把文本写入磁盘或压缩流，再按需流式读取。
+     *
+     * @param inputStream 文件输入流，由调用方负责关闭
+     * @param writer      接收文本的输出，由调用方负责关闭
+     */
+    public void parse(InputStream inputStream, Writer writer) {
+        try {
+            parserSupplier.get().parse(inputStream, new BodyContentHandler(writer), metadataSupplier.get(),
+                    parseContextSupplier.get());
+        } catch (ZeroByteFileException e) {
+            throw new BlankDocumentException();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * 将Tika的{@link Metadata}对象转换为{@link dev.langchain4j.data.document.Metadata}对象。
      *
@@ -0,0 +1,86 @@
+package com.mtmn.smartdoc.common;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+import java.time.Duration;
+
+/**
+ * 支持取消的 HTTP 客户端构建器
+ * 包装 LangChain4j 默认加载的 HTTP 客户端，在解析 SSE 响应体之前把响应体绑定到
+ * {@link StreamCancellation}，使下游取消订阅时能够真正关闭上游连接
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/10 10:20
+ */
+public class CancellableHttpClientBuilder implements HttpClientBuilder {
+
+    private final HttpClientBuilder delegate;
+    private final StreamCancellation cancellation;
+
+    public CancellableHttpClientBuilder(StreamCancellation cancellation) {
+        this(HttpClientBuilderLoader.loadHttpClientBuilder(), cancellation);
+    }
+
+    public CancellableHttpClientBuilder(HttpClientBuilder delegate, StreamCancellation cancellation) {
+        this.delegate = delegate;
+        this.cancellation = cancellation;
+    }
+
+    @Override
+    public Duration connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration timeout) {
+        delegate.connectTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return delegate.readTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration timeout) {
+        delegate.readTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        return new CancellableHttpClient(delegate.build(), cancellation);
+    }
+
+    /**
+     * 在 SSE 解析器外层绑定取消句柄的 HTTP 客户端
+     */
+    private static class CancellableHttpClient implements HttpClient {
+
+        private final HttpClient delegate;
+        private final StreamCancellation cancellation;
+
+        private CancellableHttpClient(HttpClient delegate, StreamCancellation cancellation) {
+            this.delegate = delegate;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public SuccessfulHttpResponse execute(HttpRequest request) {
+            return delegate.execute(request);
+        }
+
+        @Override
+        public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+            delegate.execute(request, (body, eventListener) -> parser.parse(cancellation.attach(body), eventListener), listener);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.mtmn.smartdoc.common;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 键集分页游标
+ * 按 (创建时间, ID) 倒序分页时，记录上一页最后一条记录的位置；
+ * 下一页从该位置之后开始查询，直接利用索引定位，不需要像 OFFSET 那样扫描并丢弃前面的行。
+ * 对外以 URL 安全的 Base64 字符串传递，客户端不应解析其内容
+ *
+ * @param createdAt 上一页最后一条记录的创建时间
+ * @param id        上一页最后一条记录的ID，创建时间相同时用于确定顺序
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/20 10:15
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+    public KeysetCursor {
+        if (createdAt == null || id == null) {
+            throw new IllegalArgumentException("游标的创建时间和ID不能为空");
+        }
+    }
+
+    /**
+     * 编码为客户端传递的游标字符串
+     */
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析客户端传入的游标
+     *
+     * @param cursor 游标字符串，为空表示第一页
+     * @return 游标，第一页时返回null
+     * @throws CustomException 游标格式无效时
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new CustomException(400, "无效的分页游标");
+            }
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new CustomException(400, "无效的分页游标");
+        }
+    }
+}
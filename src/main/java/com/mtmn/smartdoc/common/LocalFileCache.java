@@ -0,0 +1,349 @@
+package com.mtmn.smartdoc.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘文件缓存
+ * 按对象路径缓存远端对象的完整内容，以 ETag 校验是否过期，
+ * 总大小超过上限时按最近最少使用淘汰。
+ * 每个缓存文件旁有一个记录对象路径和ETag的元数据文件，启动时据此从磁盘重建索引，重启后缓存仍然有效
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/17 16:40
+ */
+public class LocalFileCache {
+
+    /**
+     * 缓存条目
+     *
+     * @param key  对象路径
+     * @param etag 缓存时对象的ETag
+     * @param path 本地文件
+     * @param size 文件大小（字节）
+     */
+    public record Entry(String key, String etag, Path path, long size) {
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * 访问顺序的 LinkedHashMap，迭代顺序即淘汰顺序
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String META_SUFFIX = ".meta";
+
+    /**
+     * @param directory 缓存目录，不存在时创建，已有的缓存文件重新登记到索引
+     * @param maxBytes  缓存总大小上限
+     */
+    public LocalFileCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            rebuild();
+        } catch (IOException e) {
+            throw new UncheckedIOException("初始化本地缓存目录失败: " + directory, e);
+        }
+    }
+
+    /**
+     * 从缓存目录重建索引
+     *
+     * 实现思路：
+     * 1. 删除上次运行遗留的临时文件，以及缺少元数据或数据文件的残缺条目
+     * 2. 按文件修改时间从旧到新登记，修改时间即写入时间，近似恢复淘汰顺序；同一对象有多个版本时保留最新的
+     * 3. 超出容量上限（如上限调小）时按顺序淘汰最旧的条目
+     */
+    private void rebuild() throws IOException {
+        List<Path> dataFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(DATA_SUFFIX)) {
+                    dataFiles.add(file);
+                } else if (!name.endsWith(META_SUFFIX) || !Files.exists(dataFile(file))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        List<Entry> loaded = new ArrayList<>(dataFiles.size());
+        List<Long> modifiedTimes = new ArrayList<>(dataFiles.size());
+        for (Path dataFile : dataFiles) {
+            Path metaFile = metaFile(dataFile);
+            try {
+                String[] meta = Files.readString(metaFile, StandardCharsets.UTF_8).split("\n", 2);
+                if (meta.length == 2 && dataFile.getFileName().toString().equals(fileName(meta[1], meta[0]))) {
+                    loaded.add(new Entry(meta[1], meta[0], dataFile, Files.size(dataFile)));
+                    modifiedTimes.add(Files.getLastModifiedTime(dataFile).toMillis());
+                    continue;
+                }
+            } catch (IOException ignored) {
+                // 元数据缺失或不可读，按残缺条目删除
+            }
+            Files.deleteIfExists(dataFile);
+            Files.deleteIfExists(metaFile);
+        }
+
+        List<Integer> order = new ArrayList<>(loaded.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Long.compare(modifiedTimes.get(a), modifiedTimes.get(b)));
+
+        List<Entry> removed = new ArrayList<>();
+        for (int i : order) {
+            Entry entry = loaded.get(i);
+            Entry previous = remove(entry.key());
+            if (previous != null) {
+                removed.add(previous);
+            }
+            entries.put(entry.key(), entry);
+            totalBytes += entry.size();
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.size();
+            removed.add(eldest);
+        }
+        removed.forEach(LocalFileCache::deleteQuietly);
+    }
+
+    /**
+     * 查找缓存，不校验ETag
+     * 用于内容不可变的对象（路径包含UUID，写入后不再修改），命中时不需要先向远端查询ETag
+     *
+     * @param key 对象路径
+     * @return 命中时返回缓存条目
+     */
+    public Optional<Entry> get(String key) {
+        Entry stale;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && Files.exists(entry.path())) {
+                hits.incrementAndGet();
+                return Optional.of(entry);
+            }
+            misses.incrementAndGet();
+            stale = entry == null ? null : remove(key);
+        }
+        deleteQuietly(stale);
+        return Optional.empty();
+    }
+
+    /**
+     * 查找缓存，ETag 不一致时视为过期并删除
+     *
+     * @param key  对象路径
+     * @param etag 对象当前的ETag
+     * @return 命中时返回缓存条目
+     */
+    public Optional<Entry> get(String key, String etag) {
+        Entry stale;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.etag().equals(etag) && Files.exists(entry.path())) {
+                hits.incrementAndGet();
+                return Optional.of(entry);
+            }
+            misses.incrementAndGet();
+            stale = entry == null ? null : remove(key);
+        }
+        deleteQuietly(stale);
+        return Optional.empty();
+    }
+
+    /**
+     * 是否存在该对象的缓存（不校验ETag，不计入命中统计）
+     */
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * 把输入流的内容写入缓存
+     * 先写入临时文件再原子移动，读取方不会看到写了一半的文件；元数据文件在数据文件就位之前写入，
+     * 重启时不会登记缺少元数据的数据文件。写入后按 LRU 淘汰超出上限的条目
+     *
+     * @param key         对象路径
+     * @param etag        对象的ETag
+     * @param inputStream 对象内容，由调用方关闭
+     * @return 新的缓存条目
+     * @throws IOException 写入失败时
+     */
+    public Entry put(String key, String etag, InputStream inputStream) throws IOException {
+        Path temp = Files.createTempFile(directory, "tmp-", ".part");
+        Entry entry;
+        try {
+            long size = Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            Path target = directory.resolve(fileName(key, etag));
+            Files.writeString(metaFile(target), etag + "\n" + key, StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entry = new Entry(key, etag, target, size);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = remove(key);
+            if (previous != null && !previous.path().equals(entry.path())) {
+                removed.add(previous);
+            }
+            entries.put(key, entry);
+            totalBytes += entry.size();
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (totalBytes > maxBytes && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                if (eldest == entry) {
+                    continue;
+                }
+                iterator.remove();
+                totalBytes -= eldest.size();
+                evictions.incrementAndGet();
+                removed.add(eldest);
+            }
+        }
+        // 已打开的文件在 POSIX 系统上删除后仍可继续读取
+        removed.forEach(LocalFileCache::deleteQuietly);
+        return entry;
+    }
+
+    /**
+     * 删除对象的缓存
+     *
+     * @param key 对象路径
+     */
+    public void invalidate(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = remove(key);
+        }
+        deleteQuietly(entry);
+    }
+
+    /**
+     * 删除路径前缀下所有对象的缓存
+     *
+     * @param prefix 对象路径前缀
+     */
+    public void invalidatePrefix(String prefix) {
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next().getValue();
+                if (entry.key().startsWith(prefix)) {
+                    iterator.remove();
+                    totalBytes -= entry.size();
+                    removed.add(entry);
+                }
+            }
+        }
+        removed.forEach(LocalFileCache::deleteQuietly);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * 命中率，尚无访问时为0
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    private Entry remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size();
+        }
+        return entry;
+    }
+
+    /**
+     * 文件名由对象路径和ETag的哈希组成，对象更新后新旧文件互不覆盖
+     */
+    private static String fileName(String key, String etag) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(etag.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest()) + DATA_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path metaFile(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        return dataFile.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + META_SUFFIX);
+    }
+
+    private static Path dataFile(Path metaFile) {
+        String name = metaFile.getFileName().toString();
+        return metaFile.resolveSibling(name.substring(0, name.length() - META_SUFFIX.length()) + DATA_SUFFIX);
+    }
+
+    private static void deleteQuietly(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(entry.path());
+            Files.deleteIfExists(metaFile(entry.path()));
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mtmn.smartdoc.common;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单次 LLM 流式请求的取消句柄
+ * HTTP 响应体在开始解析时通过 {@link #attach(InputStream)} 绑定到句柄上，
+ * 调用 {@link #cancel()} 会关闭响应体，从而中断上游连接，模型不再继续生成
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/10 10:12
+ */
+@Log4j2
+public class StreamCancellation {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicReference<InputStream> responseBody = new AtomicReference<>();
+
+    /**
+     * 绑定 HTTP 响应体；如果在响应到达前已经取消，则立即关闭
+     *
+     * @param body HTTP 响应体
+     * @return 原响应体
+     */
+    public InputStream attach(InputStream body) {
+        responseBody.set(body);
+        if (cancelled.get()) {
+            closeQuietly(body);
+        }
+        return body;
+    }
+
+    /**
+     * 取消请求并关闭已绑定的响应体
+     *
+     * @return 本次调用是否真正触发了取消（重复取消返回 false）
+     */
+    public boolean cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+        InputStream body = responseBody.get();
+        if (body != null) {
+            closeQuietly(body);
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    private void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            log.debug("关闭 LLM 响应流失败: {}", e.getMessage());
+        }
+    }
+}
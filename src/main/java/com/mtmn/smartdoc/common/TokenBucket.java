@@ -0,0 +1,63 @@
+package com.mtmn.smartdoc.common;
+
+/**
+ * 令牌桶
+ * 按固定速率补充令牌，桶容量决定允许的突发请求数
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/13 10:05
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param capacity        桶容量
+     * @param refillPerMinute 每分钟补充的令牌数
+     */
+    public TokenBucket(int capacity, int refillPerMinute) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerMinute / 60_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @return 是否获取成功
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 归还一个令牌（例如另一个维度限流失败时撤销本次扣减）
+     */
+    public synchronized void release() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * 桶是否已补满，补满且长时间未使用的桶可以回收
+     */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,85 @@
+package com.mtmn.smartdoc.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 问答准入控制配置类
+ * 自动绑定application.yml中的chat.admission配置
+ * @author charmingdaidai
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat.admission")
+@Getter
+@Setter
+public class ChatAdmissionConfig {
+
+    /**
+     * 是否启用准入控制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同时执行的问答请求数量上限（检索 + 生成）
+     */
+    private int maxConcurrent = 8;
+
+    /**
+     * 排队等待的请求数量上限，超过后直接返回繁忙
+     */
+    private int maxQueued = 32;
+
+    /**
+     * 最长排队时间，超时后返回繁忙
+     */
+    private Duration queueTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 每个用户的令牌桶配置
+     */
+    private Bucket user = new Bucket(10, 20);
+
+    /**
+     * 每个知识库的令牌桶配置
+     */
+    private Bucket knowledgeBase = new Bucket(30, 60);
+
+    /**
+     * 普通用户在公平队列中的权重
+     */
+    private double defaultWeight = 1.0;
+
+    /**
+     * VIP 用户在公平队列中的权重
+     */
+    private double vipWeight = 2.0;
+
+    /**
+     * 令牌桶配置
+     */
+    @Getter
+    @Setter
+    public static class Bucket {
+        /**
+         * 桶容量，即允许的突发请求数
+         */
+        private int capacity;
+
+        /**
+         * 每分钟补充的令牌数
+         */
+        private int refillPerMinute;
+
+        public Bucket() {
+        }
+
+        public Bucket(int capacity, int refillPerMinute) {
+            this.capacity = capacity;
+            this.refillPerMinute = refillPerMinute;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.mtmn.smartdoc.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 流式对话配置类
+ * 自动绑定application.yml中的chat.stream配置
+ * @author charmingdaidai
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat.stream")
+@Getter
+@Setter
+public class ChatStreamConfig {
+
+    /**
+     * 单次回答的最长生成时间，超时后主动中断上游 LLM 流
+     */
+    private Duration maxGenerationTime = Duration.ofSeconds(120);
+}
@@ -0,0 +1,45 @@
+package com.mtmn.smartdoc.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 上下文组装配置类
+ * 自动绑定application.yml中的context配置
+ * @author charmingdaidai
+ */
+@Configuration
+@ConfigurationProperties(prefix = "context")
+@Getter
+@Setter
+public class ContextConfig {
+
+    /**
+     * 默认的上下文 token 预算
+     */
+    private int defaultMaxTokens = 6000;
+
+    /**
+     * 按大语言模型ID配置的上下文 token 预算，未配置的模型使用默认预算
+     */
+    private Map<String, Integer> modelMaxTokens = new HashMap<>();
+
+    /**
+     * SimHash 海明距离不超过该值的片段视为近似重复
+     */
+    private int duplicateHammingDistance = 3;
+
+    /**
+     * 获取指定模型的上下文 token 预算
+     * @param modelId 大语言模型ID
+     * @return token 预算
+     */
+    public int getMaxTokens(String modelId) {
+        return modelMaxTokens.getOrDefault(modelId, defaultMaxTokens);
+    }
+}
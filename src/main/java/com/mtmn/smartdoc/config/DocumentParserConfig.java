@@ -0,0 +1,27 @@
+package com.mtmn.smartdoc.config;
+
+import org.apache.tika.detect.Detector;
+import org.apache.tika.parser.AutoDetectParser;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tika 解析器配置
+ * AutoDetectParser 和 Detector 是线程安全的，创建时需要通过 ServiceLoader 加载全部解析器和检测器，
+ * 代价较高，因此全局共享同一个实例
+ *
+ * @author charmingdaidai
+ */
+@Configuration
+public class DocumentParserConfig {
+
+    @Bean
+    public AutoDetectParser autoDetectParser() {
+        return new AutoDetectParser();
+    }
+
+    @Bean
+    public Detector tikaDetector(AutoDetectParser autoDetectParser) {
+        return autoDetectParser.getDetector();
+    }
+}
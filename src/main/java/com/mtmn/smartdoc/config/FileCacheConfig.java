@@ -0,0 +1,39 @@
+package com.mtmn.smartdoc.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * 本地文件缓存配置类
+ * 自动绑定application.yml中的minio.cache配置
+ * @author charmingdaidai
+ */
+@Configuration
+@ConfigurationProperties(prefix = "minio.cache")
+@Getter
+@Setter
+public class FileCacheConfig {
+
+    /**
+     * 是否启用本地磁盘缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存目录，启动时会被清空，不要与其他数据共用
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/smartdoc-file-cache";
+
+    /**
+     * 缓存总大小上限，超过后按最近最少使用淘汰
+     */
+    private DataSize maxSize = DataSize.ofGigabytes(2);
+
+    /**
+     * 单个对象大小上限，更大的对象直接从 MinIO 读取不缓存
+     */
+    private DataSize maxObjectSize = DataSize.ofMegabytes(200);
+}
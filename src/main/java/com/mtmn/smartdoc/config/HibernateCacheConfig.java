@@ -0,0 +1,123 @@
+package com.mtmn.smartdoc.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate 二级缓存配置类
+ * 自动绑定application.yml中的hibernate-cache配置
+ * 使用 Caffeine 的 JCache 实现，知识库、用户、模型实体的缓存区域按条数上限和写入时间淘汰；
+ * 通过 Hibernate 写入的实体会同步更新缓存，所有区域都注册命中率指标。
+ * 不开启查询缓存：认证时的用户名查询由 UserCacheService 缓存，而 users 表每次登录都会更新最后登录时间，
+ * 查询缓存会随之整体失效
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/21 10:20
+ */
+@Configuration
+@ConfigurationProperties(prefix = "hibernate-cache")
+@Getter
+@Setter
+public class HibernateCacheConfig {
+
+    /**
+     * 是否启用二级缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 各缓存区域的配置，键为实体 @Cache 注解中的区域名称
+     */
+    private Map<String, Region> regions = new LinkedHashMap<>(Map.of(
+            "users", new Region(10_000, Duration.ofMinutes(10)),
+            "knowledge-base", new Region(10_000, Duration.ofMinutes(10)),
+            "models", new Region(1_000, Duration.ofMinutes(10))));
+
+    /**
+     * 创建二级缓存使用的 JCache 缓存管理器
+     *
+     * 实现思路：
+     * 1. 每个应用上下文使用独立 URI 的缓存管理器，不使用 JVM 全局的默认管理器，
+     *    同一 JVM 中启动多个上下文（如测试）时不会因区域已存在而创建失败，关闭时也不会影响其他上下文
+     * 2. 为每个配置的区域创建有界、按写入时间过期的缓存，并开启统计
+     * 3. 为每个缓存注册 Micrometer 指标，命中率由 cache.gets 的 hit/miss 计算
+     *
+     * @param meterRegistry 指标注册表
+     * @return 缓存管理器
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(MeterRegistry meterRegistry) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName(), classLoader)
+                .getCacheManager(URI.create("smartdoc:hibernate-cache/" + UUID.randomUUID()), classLoader);
+        regions.forEach((name, region) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(region.getMaxSize()));
+            configuration.setExpireAfterWrite(OptionalLong.of(region.getTtl().toNanos()));
+            configuration.setStatisticsEnabled(true);
+            JCacheMetrics.monitor(meterRegistry, cacheManager.createCache(name, configuration), "layer", "hibernate");
+        });
+        return cacheManager;
+    }
+
+    /**
+     * 将缓存管理器交给 Hibernate；区域缺失时启动失败，避免 Hibernate 自动创建无界缓存
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+            if (enabled) {
+                properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+                properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+                properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            }
+        };
+    }
+
+    /**
+     * 缓存区域配置
+     */
+    @Getter
+    @Setter
+    public static class Region {
+        /**
+         * 最多缓存的条目数
+         */
+        private long maxSize;
+
+        /**
+         * 写入后的过期时间，兜底处理绕过 Hibernate 直接修改数据库的情况
+         */
+        private Duration ttl;
+
+        public Region() {
+        }
+
+        public Region(long maxSize, Duration ttl) {
+            this.maxSize = maxSize;
+            this.ttl = ttl;
+        }
+    }
+}
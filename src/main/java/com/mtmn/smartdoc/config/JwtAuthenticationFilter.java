@@ -1,6 +1,9 @@
 package com.mtmn.smartdoc.config;
 
+import com.mtmn.smartdoc.po.User;
 import com.mtmn.smartdoc.service.JwtService;
+import com.mtmn.smartdoc.service.UserCacheService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.MalformedJwtException;
@@ -14,12 +17,11 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 /**
  * @author charmingdaidai
@@ -29,7 +31,7 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final UserCacheService userCacheService;
 
     @Override
     protected void doFilterInternal(
@@ -56,19 +58,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
         
         try {
-            // 尝试提取用户名
-            username = jwtService.extractUsername(jwt);
+            // 验证签名和过期时间（结果有缓存），之后只读取声明，不再重复解析
+            Claims claims = jwtService.verifyToken(jwt);
+            username = claims.getSubject();
             
             // 如果获取到用户名且尚未认证
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+                // 用户实体来自短时缓存，命中时不访问数据库
+                Optional<User> userOpt = userCacheService.getUser(username);
                 
-                // 检查token是否有效
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                // 检查令牌中的用户ID与当前用户一致，防止用户被删除后同名重建时旧令牌仍然有效
+                if (userOpt.isPresent() && matchesUserId(claims, userOpt.get())) {
+                    User user = userOpt.get();
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
+                            user,
                             null,
-                            userDetails.getAuthorities()
+                            user.getAuthorities()
                     );
                     authToken.setDetails(
                             new WebAuthenticationDetailsSource().buildDetails(request)
@@ -114,6 +119,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
+    /**
+     * 令牌中的userId声明是否与用户一致；刷新令牌等没有userId声明的令牌只校验用户名
+     */
+    private static boolean matchesUserId(Claims claims, User user) {
+        Object userId = claims.get("userId");
+        if (userId == null) {
+            return true;
+        }
+        return userId instanceof Number number && user.getId() != null && number.longValue() == user.getId();
+    }
+
     /**
      * 处理流式请求的认证错误
      * 
@@ -0,0 +1,45 @@
+package com.mtmn.smartdoc.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 文档解析配置类
+ * 自动绑定application.yml中的parse配置
+ * @author charmingdaidai
+ */
+@Configuration
+@ConfigurationProperties(prefix = "parse")
+@Getter
+@Setter
+public class ParseConfig {
+
+    /**
+     * 解析线程数，Tika 解析是 CPU 密集型任务，不宜超过 CPU 核数
+     */
+    private int threads = 2;
+
+    /**
+     * 等待解析的任务数上限，超过后直接拒绝
+     */
+    private int queueCapacity = 32;
+
+    /**
+     * 单个文档的解析超时时间
+     */
+    private Duration timeout = Duration.ofMinutes(2);
+
+    /**
+     * 超时后仍在运行、被放弃的解析线程数上限，未超过时为每个被放弃的线程补充一个工作线程
+     */
+    private int maxAbandonedThreads = 4;
+
+    /**
+     * 单个文档最多提取的字符数，超过后截断
+     */
+    private long maxCharacters = 10_000_000;
+}
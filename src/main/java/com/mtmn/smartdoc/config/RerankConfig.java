@@ -0,0 +1,55 @@
+package com.mtmn.smartdoc.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 重排序配置类
+ * 自动绑定application.yml中的rerank配置
+ * @author charmingdaidai
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rerank")
+@Getter
+@Setter
+public class RerankConfig {
+
+    /**
+     * 是否启用重排序
+     */
+    private boolean enabled = false;
+
+    /**
+     * 交叉编码器 ONNX 模型路径
+     */
+    private String modelPath;
+
+    /**
+     * 交叉编码器 tokenizer.json 路径
+     */
+    private String tokenizerPath;
+
+    /**
+     * 重排序后保留的片段数量
+     */
+    private int topN = 5;
+
+    /**
+     * 重排序耗时预算，超时后回退为原始检索顺序
+     */
+    private Duration timeBudget = Duration.ofMillis(800);
+
+    /**
+     * 每批打分的候选数量
+     */
+    private int batchSize = 8;
+
+    /**
+     * 并行打分线程数
+     */
+    private int threads = 4;
+}
@@ -2,10 +2,14 @@ package com.mtmn.smartdoc.config;
 
 import com.mtmn.smartdoc.repository.UserRepository;
 import com.mtmn.smartdoc.service.JwtService;
+import com.mtmn.smartdoc.service.UserCacheService;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -37,6 +41,28 @@ public class SecurityConfig {
 
     private final JwtService jwtService;
     private final UserRepository userRepository;
+    private final UserCacheService userCacheService;
+
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
+    /**
+     * 管理端口（Actuator）的安全配置
+     * 管理端口与应用端口分开监听，默认只绑定本机地址，供 Prometheus 从内网抓取指标；
+     * 只匹配发往管理端口的请求，应用端口上的 /actuator 路径仍由下面的规则要求认证
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain managementSecurityFilterChain(HttpSecurity http) throws Exception {
+        http
+            .securityMatcher(request -> managementPort > 0 && request.getLocalPort() == managementPort)
+            .csrf(AbstractHttpConfigurer::disable)
+            .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+            .sessionManagement(session -> session
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            );
+        return http.build();
+    }
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -44,6 +70,8 @@ public class SecurityConfig {
             .csrf(AbstractHttpConfigurer::disable)
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .authorizeHttpRequests(auth -> auth
+                // 异步分派（StreamingResponseBody 写完后）不重新鉴权，初始请求已经完成认证
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // 不需要认证的路径
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
@@ -113,7 +141,7 @@ public class SecurityConfig {
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(jwtService, userDetailsService());
+        return new JwtAuthenticationFilter(jwtService, userCacheService);
     }
 
     @Bean
@@ -0,0 +1,49 @@
+package com.mtmn.smartdoc.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Spring MVC 配置
+ * 异步响应默认使用 spring.mvc.async.request-timeout 的超时时间（按流式对话的上限设置），
+ * 需要更长时间的接口（如文档下载）在请求属性中指定自己的超时时间
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/21 10:20
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    /**
+     * 请求属性：本次请求异步响应的超时时间（{@link Duration}），未设置时使用默认值
+     */
+    public static final String ASYNC_TIMEOUT_ATTRIBUTE = WebMvcConfig.class.getName() + ".asyncTimeout";
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new AsyncTimeoutInterceptor());
+    }
+
+    /**
+     * 在异步处理开始之前，用请求属性中的超时时间覆盖默认值
+     */
+    private static class AsyncTimeoutInterceptor implements CallableProcessingInterceptor {
+
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            Object timeout = request.getAttribute(ASYNC_TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (timeout instanceof Duration duration && request instanceof AsyncWebRequest asyncWebRequest) {
+                asyncWebRequest.setTimeout(duration.toMillis());
+            }
+        }
+    }
+}
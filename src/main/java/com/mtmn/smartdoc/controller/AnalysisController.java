@@ -1,9 +1,7 @@
 package com.mtmn.smartdoc.controller;
 
 import com.mtmn.smartdoc.common.ApiResponse;
-import com.mtmn.smartdoc.po.DocumentPO;
 import com.mtmn.smartdoc.po.User;
-import com.mtmn.smartdoc.repository.DocumentRepository;
 import com.mtmn.smartdoc.service.AnalysisService;
 import com.mtmn.smartdoc.service.UserActivityService;
 import com.mtmn.smartdoc.vo.KeywordsResult;
@@ -19,7 +17,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * @author charmingdaidai
@@ -32,7 +29,6 @@ public class AnalysisController {
 
     private final AnalysisService analysisService;
     private final UserActivityService userActivityService;
-    private final DocumentRepository documentRepository;
 
     /**
      * 生成文档摘要
@@ -55,13 +51,9 @@ public class AnalysisController {
             Long documentId = Long.valueOf(requestBody.get("documentId").toString());
             SummaryResult summary = analysisService.generateSummaryFromDocument(documentId);
             
-            // 获取文档信息并记录用户活动
-            Optional<DocumentPO> documentOpt = documentRepository.findById(documentId);
-            if (documentOpt.isPresent()) {
-                DocumentPO document = documentOpt.get();
-                userActivityService.recordSummaryAnalysis(user.getId(), documentId, document.getTitle());
-                log.info("用户 {} 生成了文档 {} 的摘要", user.getUsername(), document.getTitle());
-            }
+            // 记录用户活动，文档名称在写入时按文档ID获取
+            userActivityService.recordSummaryAnalysis(user.getId(), documentId, null);
+            log.info("用户 {} 生成了文档 {} 的摘要", user.getUsername(), documentId);
             
             return ApiResponse.success(summary);
         } else {
@@ -98,13 +90,9 @@ public class AnalysisController {
             Long documentId = Long.valueOf(requestBody.get("documentId").toString());
             KeywordsResult keywords = analysisService.extractKeywordsFromDocument(documentId);
             
-            // 获取文档信息并记录用户活动
-            Optional<DocumentPO> documentOpt = documentRepository.findById(documentId);
-            if (documentOpt.isPresent()) {
-                DocumentPO document = documentOpt.get();
-                userActivityService.recordKeywordsAnalysis(user.getId(), documentId, document.getTitle());
-                log.info("用户 {} 提取了文档 {} 的关键词", user.getUsername(), document.getTitle());
-            }
+            // 记录用户活动，文档名称在写入时按文档ID获取
+            userActivityService.recordKeywordsAnalysis(user.getId(), documentId, null);
+            log.info("用户 {} 提取了文档 {} 的关键词", user.getUsername(), documentId);
             
             return ApiResponse.success(keywords);
         } else {
@@ -143,13 +131,9 @@ public class AnalysisController {
             Long documentId = Long.valueOf(requestBody.get("documentId").toString());
             PolishResult polished = analysisService.polishDocumentFromDocument(documentId, polishType);
             
-            // 获取文档信息并记录用户活动
-            Optional<DocumentPO> documentOpt = documentRepository.findById(documentId);
-            if (documentOpt.isPresent()) {
-                DocumentPO document = documentOpt.get();
-                userActivityService.recordPolishAnalysis(user.getId(), documentId, document.getTitle());
-                log.info("用户 {} 润色了文档 {}", user.getUsername(), document.getTitle());
-            }
+            // 记录用户活动，文档名称在写入时按文档ID获取
+            userActivityService.recordPolishAnalysis(user.getId(), documentId, null);
+            log.info("用户 {} 润色了文档 {}", user.getUsername(), documentId);
             
             return ApiResponse.success(polished);
         } else {
@@ -186,13 +170,9 @@ public class AnalysisController {
             Long documentId = Long.valueOf(requestBody.get("documentId").toString());
             SecurityResult security = analysisService.detectSensitiveInfoFromDocument(documentId);
             
-            // 获取文档信息并记录用户活动
-            Optional<DocumentPO> documentOpt = documentRepository.findById(documentId);
-            if (documentOpt.isPresent()) {
-                DocumentPO document = documentOpt.get();
-                userActivityService.recordSecurityAnalysis(user.getId(), documentId, document.getTitle());
-                log.info("用户 {} 对文档 {} 进行了敏感信息检测", user.getUsername(), document.getTitle());
-            }
+            // 记录用户活动，文档名称在写入时按文档ID获取
+            userActivityService.recordSecurityAnalysis(user.getId(), documentId, null);
+            log.info("用户 {} 对文档 {} 进行了敏感信息检测", user.getUsername(), documentId);
             
             return ApiResponse.success(security);
         } else {
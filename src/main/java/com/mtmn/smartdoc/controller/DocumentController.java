@@ -1,22 +1,43 @@
 package com.mtmn.smartdoc.controller;
 
 import com.mtmn.smartdoc.common.ApiResponse;
+import com.mtmn.smartdoc.common.CustomException;
+import com.mtmn.smartdoc.config.WebMvcConfig;
 import com.mtmn.smartdoc.dto.DocumentDto;
+import com.mtmn.smartdoc.dto.UserDocumentItem;
 import com.mtmn.smartdoc.po.DocumentPO;
 import com.mtmn.smartdoc.po.User;
 import com.mtmn.smartdoc.po.UserActivity;
 import com.mtmn.smartdoc.service.DocumentService;
+import com.mtmn.smartdoc.service.MinioService;
 import com.mtmn.smartdoc.service.UserActivityService;
+import com.mtmn.smartdoc.vo.CursorPage;
+import com.mtmn.smartdoc.vo.StreamUploadResult;
+import com.mtmn.smartdoc.vo.UploadFileResult;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -34,17 +55,37 @@ public class DocumentController {
 
     private final DocumentService documentService;
     private final UserActivityService userActivityService;
+    private final MinioService minioService;
+
+    /**
+     * 文档下载的异步响应超时时间，大文件下载给慢速客户端留足时间，不影响流式对话的超时
+     */
+    @Value("${document.download.timeout:30m}")
+    private Duration downloadTimeout;
 
     @GetMapping
     @Operation(summary = "获取用户文档列表", description = "获取当前用户的所有文档")
     public ApiResponse<List<DocumentDto>> getUserDocuments(@AuthenticationPrincipal User user) {
-        List<DocumentPO> documents = documentService.getUserDocuments(user);
+        List<UserDocumentItem> documents = documentService.getUserDocuments(user);
         List<DocumentDto> documentDtos = documents.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
         return ApiResponse.success(documentDtos);
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "分页获取用户文档列表", description = "按创建时间倒序键集分页，使用上一页返回的 nextCursor 获取下一页")
+    public ApiResponse<CursorPage<DocumentDto>> getUserDocumentsPage(
+            @Parameter(description = "上一页返回的游标，为空表示第一页") @RequestParam(name = "cursor", required = false) String cursor,
+            @Parameter(description = "每页条数，最多100条") @RequestParam(name = "size", defaultValue = "20") int size,
+            @AuthenticationPrincipal User user) {
+        try {
+            return ApiResponse.success(documentService.getUserDocumentsPage(user, cursor, size).map(this::convertToDto));
+        } catch (CustomException e) {
+            return ApiResponse.error(e.getCode(), e.getMessage());
+        }
+    }
+
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "上传文档", description = "上传新文档并关联到当前用户")
     public ApiResponse<DocumentDto> uploadDocument(
@@ -76,9 +117,42 @@ public class DocumentController {
         }
     }
 
+    @PutMapping(value = "/upload-stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "流式上传文档", description = "请求体为文件原始字节，边读取边分片上传到 MinIO，适合大文件")
+    public ApiResponse<StreamUploadResult> uploadDocumentStream(
+            @RequestParam(name = "fileName") String fileName,
+            @RequestParam(name = "title") String title,
+            @RequestParam(name = "fileType", required = false) String fileType,
+            HttpServletRequest request,
+            @AuthenticationPrincipal User user) {
+
+        try (InputStream inputStream = request.getInputStream()) {
+            StreamUploadResult result = documentService.uploadDocumentStream(inputStream, fileName, fileType, title, user, null);
+
+            // 记录文档上传活动
+            userActivityService.recordActivity(
+                user.getId(),
+                UserActivity.ActivityType.UPLOAD.name(),
+                result.getDocumentId(),
+                result.getTitle(),
+                "上传了文档：" + fileName
+            );
+            log.info("用户 {} 流式上传了文档 {}，大小：{} 字节，吞吐量：{} MB/s",
+                    user.getUsername(), title, result.getSize(), String.format("%.2f", result.getThroughputMbPerSecond()));
+
+            return ApiResponse.success("文档上传成功", result);
+        } catch (CustomException e) {
+            log.error("Error stream uploading document: {}", e.getMessage());
+            return ApiResponse.error(e.getCode(), "文档上传失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Error stream uploading document: {}", e.getMessage(), e);
+            return ApiResponse.error("文档上传失败: " + e.getMessage());
+        }
+    }
+
     @PostMapping(value = "/upload-batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "批量上传文档", description = "同时上传多个文档并关联到当前用户")
-    public ApiResponse<List<DocumentDto>> uploadDocuments(
+    public ApiResponse<List<UploadFileResult>> uploadDocuments(
             @RequestParam(name = "files") MultipartFile[] files,
             @RequestParam(name = "titles") String[] titles,
             @AuthenticationPrincipal User user) {
@@ -87,25 +161,23 @@ public class DocumentController {
             return ApiResponse.badRequest("文件数量不能为空，且文件数量必须与标题数量一致");
         }
         
-        List<DocumentDto> uploadedDocs = new ArrayList<>();
         try {
-            for (int i = 0; i < files.length; i++) {
-                if (!files[i].isEmpty()) {
-                    DocumentPO document = documentService.uploadDocument(files[i], titles[i], user, null);
-                    uploadedDocs.add(convertToDto(document));
-                    
-                    // 记录文档上传活动
-                    userActivityService.recordActivity(
-                        user.getId(), 
-                        UserActivity.ActivityType.UPLOAD.name(), 
-                        document.getId(), 
-                        document.getTitle(), 
-                        "上传了文档：" + document.getFileName()
-                    );
-                    log.info("用户 {} 上传了文档 {}", user.getUsername(), document.getTitle());
+            List<UploadFileResult> results = documentService.uploadDocuments(files, titles, user, null);
+            for (UploadFileResult result : results) {
+                if (!result.isSuccess()) {
+                    continue;
                 }
+                // 记录文档上传活动
+                userActivityService.recordActivity(
+                    user.getId(), 
+                    UserActivity.ActivityType.UPLOAD.name(), 
+                    result.getDocumentId(), 
+                    result.getTitle(), 
+                    "上传了文档：" + result.getFileName()
+                );
+                log.info("用户 {} 上传了文档 {}，耗时 {} ms", user.getUsername(), result.getTitle(), result.getElapsedMs());
             }
-            return ApiResponse.success("文档批量上传成功", uploadedDocs);
+            return ApiResponse.success("文档批量上传成功", results);
         } catch (Exception e) {
             log.error("Error batch uploading documents: {}", e.getMessage(), e);
             return ApiResponse.error("文档批量上传失败: " + e.getMessage());
@@ -189,6 +261,8 @@ public class DocumentController {
             // 获取文件访问URL
             String fileUrl = documentService.getDocumentUrl(id, user);
             dto.setFileUrl(fileUrl);
+            // MinIO 对客户端不可达时，通过服务端下载接口访问
+            dto.setContentUrl("/api/documents/" + id + "/content");
             
             // 记录文档查看/下载活动
             userActivityService.recordActivity(
@@ -206,6 +280,108 @@ public class DocumentController {
         }
     }
 
+    @GetMapping("/{id}/content")
+    @Operation(summary = "下载/预览文档内容", description = "由服务端转发文档内容，支持 Range 分段请求和 ETag 条件请求，仅限文档所有者")
+    public ResponseEntity<StreamingResponseBody> getDocumentContent(
+            @Parameter(description = "文档ID") @PathVariable Long id,
+            @Parameter(description = "是否作为附件下载") @RequestParam(name = "download", defaultValue = "false") boolean download,
+            @RequestHeader HttpHeaders requestHeaders,
+            HttpServletRequest request,
+            @AuthenticationPrincipal User user) {
+
+        Optional<DocumentService.DocumentContent> contentOpt = documentService.getDocumentContent(id, user);
+        if (contentOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        DocumentService.DocumentContent content = contentOpt.get();
+        String etag = "\"" + content.etag() + "\"";
+        long size = content.size();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+        // 客户端缓存的版本仍然有效时直接返回 304，不读取文件内容
+        if (matchesEtag(requestHeaders.getIfNoneMatch(), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        headers.setContentType(mediaType(content.contentType()));
+        String fileName = content.document().getFileName();
+        ContentDisposition.Builder disposition = download ? ContentDisposition.attachment() : ContentDisposition.inline();
+        headers.setContentDisposition(disposition.filename(fileName != null ? fileName : String.valueOf(id),
+                StandardCharsets.UTF_8).build());
+
+        long start = 0;
+        long length = size;
+        HttpStatus status = HttpStatus.OK;
+        HttpRange range = singleRange(requestHeaders, etag);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(size);
+                length = range.getRangeEnd(size) - start + 1;
+            } catch (IllegalArgumentException e) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + size);
+        }
+        headers.setContentLength(length);
+
+        // 响应体在异步线程中按固定大小的缓冲区写出，内存占用与文件大小无关
+        request.setAttribute(WebMvcConfig.ASYNC_TIMEOUT_ATTRIBUTE, downloadTimeout);
+        String filePath = content.document().getFilePath();
+        long offset = start;
+        long count = length;
+        StreamingResponseBody body = outputStream ->
+                minioService.transferTo(filePath, offset, count, Channels.newChannel(outputStream));
+        return ResponseEntity.status(status).headers(headers).body(body);
+    }
+
+    /**
+     * 解析单个 Range 请求
+     * 多个范围、格式错误或 If-Range 与当前 ETag 不一致时返回 null，按完整内容响应
+     */
+    private static HttpRange singleRange(HttpHeaders requestHeaders, String etag) {
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * If-None-Match 是否与当前 ETag 匹配（弱比较）
+     */
+    private static boolean matchesEtag(List<String> ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch) {
+            String value = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+            if ("*".equals(value) || etag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MediaType mediaType(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
     /**
      * 将Document实体转换为DocumentDto
      */
@@ -224,4 +400,20 @@ public class DocumentController {
                 .updatedAt(document.getUpdatedAt())
                 .build();
     }
+
+    private DocumentDto convertToDto(UserDocumentItem document) {
+        return DocumentDto.builder()
+                .id(document.id())
+                .title(document.title())
+                .fileName(document.fileName())
+                .fileType(document.fileType())
+                .fileSize(document.fileSize())
+                .summary(document.summary())
+                .keywords(document.keywords())
+                .sensitiveInfo(document.sensitiveInfo())
+                .categories(document.categories())
+                .createdAt(document.createdAt())
+                .updatedAt(document.updatedAt())
+                .build();
+    }
 }
\ No newline at end of file
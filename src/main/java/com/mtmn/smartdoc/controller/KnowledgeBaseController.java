@@ -5,7 +5,9 @@ import com.mtmn.smartdoc.dto.CreateKbRequest;
 import com.mtmn.smartdoc.dto.KnowledgeBaseDTO;
 import com.mtmn.smartdoc.po.User;
 import com.mtmn.smartdoc.service.KnowledgeBaseService;
+import com.mtmn.smartdoc.vo.CursorPage;
 import com.mtmn.smartdoc.vo.DocumentVO;
+import com.mtmn.smartdoc.vo.UploadFileResult;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -152,6 +154,25 @@ public class KnowledgeBaseController {
         return knowledgeBaseService.listKnowledgeBaseDocs(id, user);
     }
 
+    /**
+     * 键集分页获取知识库文档列表
+     *
+     * @param id     知识库ID
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size   每页条数，最多100条
+     * @param user   当前登录用户
+     * @return 一页文档及下一页的游标
+     */
+    @GetMapping("/listDocs/{id}/page")
+    @Operation(summary = "分页获取知识库文档列表", description = "按创建时间倒序键集分页，使用上一页返回的 nextCursor 获取下一页")
+    public ApiResponse<CursorPage<DocumentVO>> listDocsPage(@PathVariable(name = "id") Long id,
+                                                            @RequestParam(name = "cursor", required = false) String cursor,
+                                                            @RequestParam(name = "size", defaultValue = "20") int size,
+                                                            @AuthenticationPrincipal User user) {
+        log.info("分页获取知识库文档列表，知识库ID：{}，用户：{}", id, user.getUsername());
+        return knowledgeBaseService.listKnowledgeBaseDocsPage(id, user, cursor, size);
+    }
+
     /**
      * 知识库新增文档
      *
@@ -159,7 +180,7 @@ public class KnowledgeBaseController {
      */
     @PostMapping(value = "/addDocs/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "知识库添加文档", description = "向知识库添加文档")
-    public ApiResponse<List<Boolean>> addDocs(
+    public ApiResponse<List<UploadFileResult>> addDocs(
             @PathVariable(name = "id") Long id,
             @AuthenticationPrincipal User user,
             @RequestParam(name = "files") MultipartFile[] files,
@@ -25,6 +25,7 @@ public class DocumentDto {
     private String sensitiveInfo;
     private String categories;
     private String fileUrl;
+    private String contentUrl;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.mtmn.smartdoc.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 知识库文档列表投影
+ * 只查询列表展示需要的列，不加载摘要、关键词、敏感信息等大字段，也不创建受管实体
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/20 14:30
+ */
+public record DocumentListItem(Long id, String title, String fileName, String fileType, Long fileSize,
+                               String filePath, Boolean indexed, LocalDateTime createdAt,
+                               LocalDateTime updatedAt) {
+}
@@ -0,0 +1,16 @@
+package com.mtmn.smartdoc.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户文档列表投影
+ * 列表需要展示分析结果，保留摘要、关键词等列；不查询存储路径、内容哈希和关联，也不创建受管实体
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/20 14:35
+ */
+public record UserDocumentItem(Long id, String title, String fileName, String fileType, Long fileSize,
+                               String summary, String keywords, String sensitiveInfo, String categories,
+                               LocalDateTime createdAt, LocalDateTime updatedAt) {
+}
@@ -16,7 +16,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        @Index(name = "idx_kb_created_at", columnList = "knowledge_base_id, created_at"),
+        @Index(name = "idx_user_created_at", columnList = "user_id, created_at")
+})
 public class DocumentPO {
 
     @Id
@@ -38,6 +41,10 @@ public class DocumentPO {
     @Column(nullable = false)
     private String filePath;
 
+    // 文件内容的 SHA-256，相同内容的文档共享同一个 MinIO 对象
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(length = 1000)
     private String summary;
 
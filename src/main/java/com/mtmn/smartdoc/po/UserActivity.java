@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
  * @author charmingdaidai
  */
 @Entity
-@Table(name = "user_activities")
+@Table(name = "user_activities", indexes = {
+        @Index(name = "idx_user_activities_user_created", columnList = "user_id, created_at"),
+        @Index(name = "idx_user_activities_user_type", columnList = "user_id, activity_type")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -0,0 +1,53 @@
+package com.mtmn.smartdoc.po;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户统计实体类
+ * 预先计算的仪表盘统计数据，文档和分析活动写入时增量更新，由定时任务与明细表对账
+ *
+ * @author charmingdaidai
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "user_statistics")
+public class UserStatistics {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "document_count", nullable = false)
+    private long documentCount;
+
+    @Column(name = "summary_count", nullable = false)
+    private long summaryCount;
+
+    @Column(name = "keywords_count", nullable = false)
+    private long keywordsCount;
+
+    @Column(name = "security_count", nullable = false)
+    private long securityCount;
+
+    @Column(name = "polish_count", nullable = false)
+    private long polishCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /**
+     * 分析活动总数（摘要、关键词、安全检查、润色）
+     */
+    public long getAnalysisCount() {
+        return summaryCount + keywordsCount + securityCount + polishCount;
+    }
+}
@@ -0,0 +1,87 @@
+package com.mtmn.smartdoc.repository;
+
+import com.mtmn.smartdoc.po.DocumentPO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文档批量写入
+ * 文档主键使用 IDENTITY 生成，Hibernate 无法对其批量插入，这里直接使用 JDBC 批处理；
+ * 配合连接参数 rewriteBatchedStatements=true，MySQL 驱动会把整批改写为一条多值 INSERT
+ *
+ * @author charmingdaidai
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocumentBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO documents (title, file_name, file_type, file_size, file_path, " +
+            "content_hash, knowledge_base_id, indexed, user_id, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 批量插入文档，并把生成的主键和创建时间回填到传入的对象中
+     *
+     * @param documents 待插入的文档
+     */
+    @Transactional
+    public void insertAll(List<DocumentPO> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp timestamp = Timestamp.valueOf(now);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        DocumentPO document = documents.get(i);
+                        ps.setString(1, document.getTitle());
+                        ps.setString(2, document.getFileName());
+                        ps.setString(3, document.getFileType());
+                        ps.setLong(4, document.getFileSize());
+                        ps.setString(5, document.getFilePath());
+                        ps.setString(6, document.getContentHash());
+                        ps.setObject(7, document.getKnowledgeBaseId(), Types.BIGINT);
+                        ps.setObject(8, document.getIndexed(), Types.BOOLEAN);
+                        ps.setObject(9, document.getUser() != null ? document.getUser().getId() : null, Types.BIGINT);
+                        ps.setTimestamp(10, timestamp);
+                        ps.setTimestamp(11, timestamp);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return documents.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < documents.size(); i++) {
+            DocumentPO document = documents.get(i);
+            document.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            document.setCreatedAt(now);
+            document.setUpdatedAt(now);
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package com.mtmn.smartdoc.repository;
 
+import com.mtmn.smartdoc.dto.DocumentListItem;
+import com.mtmn.smartdoc.dto.UserDocumentItem;
 import com.mtmn.smartdoc.po.DocumentPO;
 import com.mtmn.smartdoc.po.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -12,6 +20,18 @@ import java.util.List;
  */
 @Repository
 public interface DocumentRepository extends JpaRepository<DocumentPO, Long> {
+
+    /**
+     * 知识库文档列表投影的列，与 DocumentListItem 的构造参数顺序一致
+     */
+    String LIST_ITEM_COLUMNS = "d.id, d.title, d.fileName, d.fileType, d.fileSize, d.filePath, d.indexed, " +
+            "d.createdAt, d.updatedAt";
+
+    /**
+     * 用户文档列表投影的列，与 UserDocumentItem 的构造参数顺序一致
+     */
+    String USER_ITEM_COLUMNS = "d.id, d.title, d.fileName, d.fileType, d.fileSize, d.summary, d.keywords, " +
+            "d.sensitiveInfo, d.categories, d.createdAt, d.updatedAt";
     
     /**
      * 根据用户ID统计文档数量
@@ -42,4 +62,78 @@ public interface DocumentRepository extends JpaRepository<DocumentPO, Long> {
      * 根据知识库ID查询所有文档（按创建时间降序）
      */
     List<DocumentPO> findByKnowledgeBaseIdOrderByCreatedAtDesc(Long knowledgeBaseId);
-}
\ No newline at end of file
+
+    /**
+     * 查询知识库的文档列表（按创建时间降序），只取列表需要的列
+     */
+    @Query("SELECT new com.mtmn.smartdoc.dto.DocumentListItem(" + LIST_ITEM_COLUMNS + ") FROM DocumentPO d " +
+            "WHERE d.knowledgeBaseId = :knowledgeBaseId ORDER BY d.createdAt DESC, d.id DESC")
+    List<DocumentListItem> findListItemsByKnowledgeBaseId(@Param("knowledgeBaseId") Long knowledgeBaseId);
+
+    /**
+     * 键集分页查询知识库文档的第一页，走 (knowledge_base_id, created_at) 索引
+     */
+    @Query("SELECT new com.mtmn.smartdoc.dto.DocumentListItem(" + LIST_ITEM_COLUMNS + ") FROM DocumentPO d " +
+            "WHERE d.knowledgeBaseId = :knowledgeBaseId ORDER BY d.createdAt DESC, d.id DESC")
+    List<DocumentListItem> findKnowledgeBasePage(@Param("knowledgeBaseId") Long knowledgeBaseId, Pageable pageable);
+
+    /**
+     * 键集分页查询知识库文档中位于游标之后的一页
+     */
+    @Query("SELECT new com.mtmn.smartdoc.dto.DocumentListItem(" + LIST_ITEM_COLUMNS + ") FROM DocumentPO d " +
+            "WHERE d.knowledgeBaseId = :knowledgeBaseId " +
+            "AND (d.createdAt < :createdAt OR (d.createdAt = :createdAt AND d.id < :id)) " +
+            "ORDER BY d.createdAt DESC, d.id DESC")
+    List<DocumentListItem> findKnowledgeBasePageAfter(@Param("knowledgeBaseId") Long knowledgeBaseId,
+                                                      @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") Long id, Pageable pageable);
+
+    /**
+     * 查询用户的文档列表（按创建时间降序），只取列表需要的列
+     */
+    @Query("SELECT new com.mtmn.smartdoc.dto.UserDocumentItem(" + USER_ITEM_COLUMNS + ") FROM DocumentPO d " +
+            "WHERE d.user.id = :userId ORDER BY d.createdAt DESC, d.id DESC")
+    List<UserDocumentItem> findItemsByUserId(@Param("userId") Long userId);
+
+    /**
+     * 键集分页查询用户文档的第一页，走 (user_id, created_at) 索引
+     */
+    @Query("SELECT new com.mtmn.smartdoc.dto.UserDocumentItem(" + USER_ITEM_COLUMNS + ") FROM DocumentPO d " +
+            "WHERE d.user.id = :userId ORDER BY d.createdAt DESC, d.id DESC")
+    List<UserDocumentItem> findUserPage(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * 键集分页查询用户文档中位于游标之后的一页
+     */
+    @Query("SELECT new com.mtmn.smartdoc.dto.UserDocumentItem(" + USER_ITEM_COLUMNS + ") FROM DocumentPO d " +
+            "WHERE d.user.id = :userId " +
+            "AND (d.createdAt < :createdAt OR (d.createdAt = :createdAt AND d.id < :id)) " +
+            "ORDER BY d.createdAt DESC, d.id DESC")
+    List<UserDocumentItem> findUserPageAfter(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id, Pageable pageable);
+
+    /**
+     * 查询知识库中所有文档的对象路径，走 knowledge_base_id 索引，只取需要的列
+     */
+    @Query("SELECT d.filePath FROM DocumentPO d WHERE d.knowledgeBaseId = :knowledgeBaseId")
+    List<String> findFilePathsByKnowledgeBaseId(@Param("knowledgeBaseId") Long knowledgeBaseId);
+
+    /**
+     * 批量删除知识库中的所有文档，一条 DELETE 语句完成，不逐个加载实体
+     *
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM DocumentPO d WHERE d.knowledgeBaseId = :knowledgeBaseId")
+    int deleteByKnowledgeBaseId(@Param("knowledgeBaseId") Long knowledgeBaseId);
+
+    /**
+     * 批量将文档标记为已索引，一条 UPDATE ... WHERE id IN (...) 完成，不逐个加载和保存实体
+     * 批量更新不会触发实体的 @PreUpdate，更新时间由调用方传入
+     *
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("UPDATE DocumentPO d SET d.indexed = true, d.updatedAt = :updatedAt WHERE d.id IN :ids")
+    int markIndexed(@Param("ids") Collection<Long> ids, @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -0,0 +1,89 @@
+package com.mtmn.smartdoc.repository;
+
+import com.mtmn.smartdoc.po.StoredObject;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 原生更新语句通过 HINT_NATIVE_SPACES 声明只影响本表，否则 Hibernate 执行后会清空整个二级缓存
+ *
+ * @author charmingdaidai
+ */
+@Repository
+public interface StoredObjectRepository extends JpaRepository<StoredObject, Long> {
+
+    /**
+     * 根据内容哈希查询存储对象
+     */
+    Optional<StoredObject> findByContentHash(String contentHash);
+
+    /**
+     * 根据对象路径查询存储对象
+     */
+    Optional<StoredObject> findByFilePath(String filePath);
+
+    /**
+     * 根据对象路径批量查询存储对象
+     */
+    List<StoredObject> findByFilePathIn(Collection<String> filePaths);
+
+    /**
+     * 已存在相同内容时引用计数加一
+     *
+     * @return 更新的行数，0表示该内容尚未存储
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stored_objects"))
+    @Query(value = "UPDATE stored_objects SET ref_count = ref_count + 1, updated_at = NOW() " +
+            "WHERE content_hash = :contentHash", nativeQuery = true)
+    int incrementRefCount(@Param("contentHash") String contentHash);
+
+    /**
+     * 登记新存储的对象；并发上传相同内容时唯一键冲突，改为对已登记的对象引用计数加一
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stored_objects"))
+    @Query(value = "INSERT INTO stored_objects (content_hash, file_path, file_size, ref_count, created_at, updated_at) " +
+            "VALUES (:contentHash, :filePath, :fileSize, 1, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = NOW()", nativeQuery = true)
+    int insertOrIncrement(@Param("contentHash") String contentHash, @Param("filePath") String filePath,
+                          @Param("fileSize") long fileSize);
+
+    /**
+     * 引用计数减一，不会减到负数
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stored_objects"))
+    @Query(value = "UPDATE stored_objects SET ref_count = ref_count - 1, updated_at = NOW() " +
+            "WHERE id = :id AND ref_count > 0", nativeQuery = true)
+    int decrementRefCount(@Param("id") Long id);
+
+    /**
+     * 引用计数减去指定值，不会减到负数
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stored_objects"))
+    @Query(value = "UPDATE stored_objects SET ref_count = GREATEST(ref_count - :count, 0), updated_at = NOW() " +
+            "WHERE id = :id", nativeQuery = true)
+    int decrementRefCountBy(@Param("id") Long id, @Param("count") long count);
+
+    /**
+     * 删除已无引用的存储对象
+     *
+     * @return 删除的行数，1表示本次调用负责删除 MinIO 中的对象
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stored_objects"))
+    @Query(value = "DELETE FROM stored_objects WHERE id = :id AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("id") Long id);
+}
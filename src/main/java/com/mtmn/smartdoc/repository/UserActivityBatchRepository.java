@@ -0,0 +1,75 @@
+package com.mtmn.smartdoc.repository;
+
+import com.mtmn.smartdoc.po.UserActivity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * 用户活动批量写入
+ * 活动记录只写不改，使用 JDBC 批处理插入，配合 rewriteBatchedStatements=true 整批改写为一条多值 INSERT。
+ * 未提供文档名称时在插入语句中按文档ID查询标题，调用方不需要为此额外查询文档
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/19 14:10
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserActivityBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO user_activities (user_id, activity_type, document_id, " +
+            "document_name, description, created_at) " +
+            "VALUES (?, ?, ?, COALESCE(?, (SELECT title FROM documents WHERE id = ?)), ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 批量插入活动记录
+     *
+     * @param activities 待插入的活动记录
+     */
+    public void insertAll(List<UserActivity> activities) {
+        if (activities.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                setParameters(ps, activities.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return activities.size();
+            }
+        });
+    }
+
+    /**
+     * 插入单条活动记录
+     *
+     * @param activity 活动记录
+     */
+    public void insert(UserActivity activity) {
+        jdbcTemplate.update(INSERT_SQL, ps -> setParameters(ps, activity));
+    }
+
+    private static void setParameters(PreparedStatement ps, UserActivity activity) throws SQLException {
+        ps.setLong(1, activity.getUserId());
+        ps.setString(2, activity.getActivityType());
+        ps.setObject(3, activity.getDocumentId(), Types.BIGINT);
+        ps.setString(4, activity.getDocumentName());
+        ps.setObject(5, activity.getDocumentId(), Types.BIGINT);
+        ps.setString(6, activity.getDescription());
+        ps.setTimestamp(7, Timestamp.valueOf(activity.getCreatedAt()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.mtmn.smartdoc.repository;
+
+import com.mtmn.smartdoc.po.UserStatistics;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 原生更新语句通过 HINT_NATIVE_SPACES 声明只影响本表，否则 Hibernate 执行后会清空整个二级缓存
+ *
+ * @author charmingdaidai
+ */
+@Repository
+public interface UserStatisticsRepository extends JpaRepository<UserStatistics, Long> {
+
+    /**
+     * 在已有统计上累加增量，文档数不会减到负数；统计行尚不存在时不更新，由首次读取或对账时完整计算
+     *
+     * @return 更新的行数，0表示该用户尚无统计行
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_statistics"))
+    @Query(value = "UPDATE user_statistics SET " +
+            "document_count = GREATEST(document_count + :documents, 0), " +
+            "summary_count = summary_count + :summary, " +
+            "keywords_count = keywords_count + :keywords, " +
+            "security_count = security_count + :security, " +
+            "polish_count = polish_count + :polish, " +
+            "updated_at = NOW() " +
+            "WHERE user_id = :userId", nativeQuery = true)
+    int increment(@Param("userId") Long userId, @Param("documents") long documents, @Param("summary") long summary,
+                  @Param("keywords") long keywords, @Param("security") long security, @Param("polish") long polish);
+
+    /**
+     * 锁定 ID 范围内已有的统计行，等待正在更新这些行的事务提交
+     * READ COMMITTED 下只锁匹配的行，不加间隙锁
+     *
+     * @return 锁定的用户ID
+     */
+    @Query(value = "SELECT user_id FROM user_statistics WHERE user_id BETWEEN :fromId AND :toId FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 从文档表和活动表重新计算 ID 范围内用户的统计数据，覆盖已有统计行
+     * 每张明细表只按 user_id 范围扫描一次并分组汇总；
+     * 调用方应在 READ COMMITTED 事务中先调用 lockRange 再执行，避免对明细表加共享锁，
+     * 也保证汇总读取的快照包含所有已累加到统计行上的增量
+     *
+     * @return 影响的行数
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_statistics"))
+    @Query(value = "INSERT INTO user_statistics (user_id, document_count, summary_count, keywords_count, " +
+            "security_count, polish_count, updated_at) " +
+            "SELECT u.id, COALESCE(d.document_count, 0), COALESCE(a.summary_count, 0), COALESCE(a.keywords_count, 0), " +
+            "COALESCE(a.security_count, 0), COALESCE(a.polish_count, 0), NOW() " +
+            "FROM users u " +
+            "LEFT JOIN (SELECT user_id, COUNT(*) AS document_count FROM documents " +
+            "WHERE user_id BETWEEN :fromId AND :toId GROUP BY user_id) d ON d.user_id = u.id " +
+            "LEFT JOIN (SELECT user_id, " +
+            "SUM(activity_type = 'SUMMARY') AS summary_count, " +
+            "SUM(activity_type = 'KEYWORDS') AS keywords_count, " +
+            "SUM(activity_type = 'SECURITY') AS security_count, " +
+            "SUM(activity_type = 'POLISH') AS polish_count " +
+            "FROM user_activities WHERE user_id BETWEEN :fromId AND :toId " +
+            "AND activity_type IN ('SUMMARY', 'KEYWORDS', 'SECURITY', 'POLISH') GROUP BY user_id) a ON a.user_id = u.id " +
+            "WHERE u.id BETWEEN :fromId AND :toId " +
+            "ON DUPLICATE KEY UPDATE document_count = VALUES(document_count), summary_count = VALUES(summary_count), " +
+            "keywords_count = VALUES(keywords_count), security_count = VALUES(security_count), " +
+            "polish_count = VALUES(polish_count), updated_at = VALUES(updated_at)", nativeQuery = true)
+    int recompute(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 查询最大的用户ID，对账时按ID范围分批
+     */
+    @Query(value = "SELECT COALESCE(MAX(id), 0) FROM users", nativeQuery = true)
+    long findMaxUserId();
+}
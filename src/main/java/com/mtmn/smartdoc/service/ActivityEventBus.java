@@ -0,0 +1,177 @@
+package com.mtmn.smartdoc.service;
+
+import com.mtmn.smartdoc.po.UserActivity;
+import com.mtmn.smartdoc.repository.UserActivityBatchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用户活动事件总线
+ * 请求线程只把活动记录放入无锁队列，由后台写入线程定期批量插入数据库，
+ * 活动记录不再占用请求的响应时间
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/19 14:30
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class ActivityEventBus {
+
+    private final UserActivityBatchRepository userActivityBatchRepository;
+    private final UserStatisticsService userStatisticsService;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${activity.flush-interval:500ms}")
+    private Duration flushInterval;
+
+    @Value("${activity.batch-size:500}")
+    private int batchSize;
+
+    @Value("${activity.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final Queue<UserActivity> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 队列中的事件数，ConcurrentLinkedQueue.size() 需要遍历，单独计数
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private ScheduledExecutorService writer;
+
+    @PostConstruct
+    public void init() {
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "activity-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(10, flushInterval.toMillis());
+        writer.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        meterRegistry.gauge("smartdoc.activity.queue.size", queued);
+    }
+
+    /**
+     * 关闭时停止定时写入，并把队列中剩余的事件全部写入数据库
+     */
+    @PreDestroy
+    public void destroy() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+        log.info("活动写入线程已停止，剩余未写入事件: {}", queued.get());
+    }
+
+    /**
+     * 发布活动事件
+     *
+     * 实现思路：
+     * 1. 先占用一个队列名额，超过容量时丢弃事件并计数，数据库变慢时不会无限占用内存
+     * 2. 把事件放入无锁队列后立即返回，不在请求线程访问数据库
+     *
+     * @param activity 活动记录
+     * @return 是否已放入队列
+     */
+    public boolean publish(UserActivity activity) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            meterRegistry.counter("smartdoc.activity.events", "outcome", "dropped").increment();
+            log.warn("活动队列已满（{}），丢弃活动: userId={}, type={}", queueCapacity,
+                    activity.getUserId(), activity.getActivityType());
+            return false;
+        }
+        queue.add(activity);
+        return true;
+    }
+
+    /**
+     * 把队列中的事件按批写入数据库，直到队列为空
+     *
+     * 实现思路：
+     * 1. 每次从队列取出不超过批大小的事件，一次批量插入
+     * 2. 活动记录的插入和用户统计的增量更新在同一个事务中提交，统计对账不会在两者之间重复计入这些活动
+     * 3. 批量写入失败时逐条重试，只丢弃无法写入的记录（如关联的文档已被删除）
+     * 4. 记录每批的写入耗时和写入、丢弃的事件数
+     */
+    void flush() {
+        List<UserActivity> batch = new ArrayList<>(Math.min(batchSize, Math.max(1, queued.get())));
+        UserActivity activity;
+        while (true) {
+            batch.clear();
+            while (batch.size() < batchSize && (activity = queue.poll()) != null) {
+                batch.add(activity);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            queued.addAndGet(-batch.size());
+            write(batch);
+        }
+    }
+
+    private void write(List<UserActivity> batch) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int written = batch.size();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                userActivityBatchRepository.insertAll(batch);
+                userStatisticsService.recordActivities(batch);
+            });
+        } catch (Exception e) {
+            log.warn("批量写入 {} 条活动失败，改为逐条写入: {}", batch.size(), e.getMessage());
+            written = 0;
+            for (UserActivity activity : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        userActivityBatchRepository.insert(activity);
+                        userStatisticsService.recordActivities(List.of(activity));
+                    });
+                    written++;
+                } catch (Exception ex) {
+                    meterRegistry.counter("smartdoc.activity.events", "outcome", "failed").increment();
+                    log.error("写入活动失败: userId={}, type={}, {}", activity.getUserId(),
+                            activity.getActivityType(), ex.getMessage());
+                }
+            }
+        } finally {
+            sample.stop(meterRegistry.timer("smartdoc.activity.flush"));
+        }
+        meterRegistry.counter("smartdoc.activity.events", "outcome", "written").increment(written);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // 定时任务抛出异常后不会再执行，这里只记录日志
+            log.error("写入活动记录失败", e);
+        }
+    }
+}
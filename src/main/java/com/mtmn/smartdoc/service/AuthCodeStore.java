@@ -0,0 +1,35 @@
+package com.mtmn.smartdoc.service;
+
+import com.mtmn.smartdoc.vo.AuthenticationResponse;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 一次性授权码存储接口
+ * 单实例部署使用内存实现，多实例部署在负载均衡后时使用 Redis 实现，
+ * 通过 auth.code-store.type 选择
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/19 09:30
+ */
+public interface AuthCodeStore {
+
+    /**
+     * 保存授权码
+     *
+     * @param code     一次性授权码
+     * @param response 认证响应
+     * @param ttl      有效期
+     */
+    void put(String code, AuthenticationResponse response, Duration ttl);
+
+    /**
+     * 原子地取出并删除授权码，同一授权码并发使用时只有一个调用方能取到
+     *
+     * @param code 一次性授权码
+     * @return 未过期时返回认证响应
+     */
+    Optional<AuthenticationResponse> take(String code);
+}
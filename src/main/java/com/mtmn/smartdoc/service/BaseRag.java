@@ -30,9 +30,9 @@ public interface BaseRag {
      * @param kbName 知识库名称
      * @param documentPoList 文档列表
      * @param params 构建参数，包括chunkSize, generateAbstract, embeddingModelName等
-     * @return 构建结果列表，每个文档对应一个布尔值表示是否成功
+     * @return 每个文档的构建结果，以文档ID对应，包含片段数、耗时和失败原因
      */
-    List<Boolean> buildIndex(String kbName, List<DocumentPO> documentPoList, Map<String, Object> params);
+    List<IndexResult> buildIndex(String kbName, List<DocumentPO> documentPoList, Map<String, Object> params);
 
     /**
      * 删除整个索引
@@ -0,0 +1,258 @@
+package com.mtmn.smartdoc.service;
+
+import com.mtmn.smartdoc.common.TokenBucket;
+import com.mtmn.smartdoc.config.ChatAdmissionConfig;
+import com.mtmn.smartdoc.po.KnowledgeBase;
+import com.mtmn.smartdoc.po.User;
+import com.mtmn.smartdoc.utils.SseUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 问答准入控制服务
+ * 在 RAG 问答之前进行限流和排队，避免单个用户占满 embedding、Milvus 和 LLM 资源
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/13 10:30
+ */
+@Service
+@Log4j2
+@RequiredArgsConstructor
+public class ChatAdmissionService {
+
+    private static final int WAITING = 0;
+    private static final int STARTED = 1;
+    private static final int ABANDONED = 2;
+    private static final int MAX_IDLE_ENTRIES = 10_000;
+
+    private final ChatAdmissionConfig admissionConfig;
+    private final SseUtil sseUtil;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    // 以下字段均由 this 锁保护
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparingDouble(Ticket::finishTag).thenComparingLong(Ticket::sequence));
+    private final Map<Long, Double> lastFinishTags = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private int running;
+
+    /**
+     * 准入并执行问答
+     *
+     * 实现思路：
+     * 1. 依次检查用户和知识库的令牌桶，任一耗尽则直接返回繁忙消息
+     * 2. 有空闲并发名额且无人排队时立即执行；否则按加权公平队列排队，队列已满则返回繁忙消息
+     * 3. 排队时先推送 queued 状态消息，轮到后再执行，超过最长排队时间返回繁忙消息
+     * 4. 公平队列按虚拟完成时间排序：每个用户的新请求完成时间 = max(系统虚拟时间, 该用户上次完成时间) + 1/权重，
+     *    持续大量提问的用户完成时间不断后移，不会饿死其他用户
+     * 5. 问答在 boundedElastic 线程执行，并传递当前请求的 SecurityContext（RAG 依赖它计算集合名称）
+     * 6. 问答结束、出错或客户端断开时释放名额并调度下一个请求，同时按用户等级记录排队时间和总耗时
+     * 7. 限流、占用名额和入队都在订阅时执行：返回的 Flux 如果没有被订阅（控制器后续抛出异常、客户端在订阅前断开），
+     *    不会占用永远不会释放的名额
+     *
+     * @param knowledgeBase 知识库
+     * @param chat          实际的问答调用，在获得名额后才会执行
+     * @return 流式响应
+     */
+    public Flux<String> admit(KnowledgeBase knowledgeBase, Supplier<Flux<String>> chat) {
+        if (!admissionConfig.isEnabled()) {
+            return chat.get();
+        }
+        // 订阅可能发生在其他线程，安全上下文需要在请求线程提前取出
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        return Flux.defer(() -> admit(knowledgeBase, chat, securityContext));
+    }
+
+    private Flux<String> admit(KnowledgeBase knowledgeBase, Supplier<Flux<String>> chat, SecurityContext securityContext) {
+        Authentication authentication = securityContext.getAuthentication();
+        User user = authentication != null && authentication.getPrincipal() instanceof User u ? u : null;
+        Long tenantId = user != null ? user.getId() : knowledgeBase.getUserId();
+        // 指标只按用户等级打标签，用户ID会让序列数随用户数无限增长
+        String tier = user == null ? "anonymous" : user.isVip() ? "vip" : "standard";
+
+        // 1. 令牌桶限流
+        TokenBucket userBucket = bucket("user:" + tenantId, admissionConfig.getUser());
+        if (!userBucket.tryAcquire()) {
+            return reject("user_rate", "您的提问过于频繁，请稍后再试。");
+        }
+        if (!bucket("kb:" + knowledgeBase.getId(), admissionConfig.getKnowledgeBase()).tryAcquire()) {
+            userBucket.release();
+            return reject("kb_rate", "该知识库当前访问量过大，请稍后再试。");
+        }
+
+        long admittedAt = System.nanoTime();
+        double weight = user != null && user.isVip() ? admissionConfig.getVipWeight() : admissionConfig.getDefaultWeight();
+
+        // 2. 立即执行或进入公平队列
+        Ticket ticket;
+        int position;
+        synchronized (this) {
+            if (running < admissionConfig.getMaxConcurrent() && queue.isEmpty()) {
+                running++;
+                ticket = new Ticket(0, sequence++, new CompletableFuture<>(), new AtomicInteger(STARTED), new AtomicBoolean());
+                position = 0;
+            } else if (queue.size() >= admissionConfig.getMaxQueued()) {
+                ticket = null;
+                position = -1;
+            } else {
+                ticket = new Ticket(nextFinishTag(tenantId, weight), sequence++, new CompletableFuture<>(),
+                        new AtomicInteger(WAITING), new AtomicBoolean());
+                queue.add(ticket);
+                position = queue.size();
+            }
+        }
+
+        if (ticket == null) {
+            return reject("queue_full", "当前提问人数较多，请稍后再试。");
+        }
+        if (position == 0) {
+            return run(ticket, chat, securityContext, tier, admittedAt);
+        }
+
+        // 3. 排队等待
+        log.info("问答请求排队，用户: {}, 知识库: {}, 排队位置: {}", tenantId, knowledgeBase.getId(), position);
+        Duration queueTimeout = admissionConfig.getQueueTimeout();
+        Flux<String> waitAndRun = Mono.fromFuture(ticket.ready())
+                .timeout(queueTimeout)
+                .flatMapMany(ignored -> run(ticket, chat, securityContext, tier, admittedAt))
+                .onErrorResume(TimeoutException.class, e -> {
+                    abandon(ticket);
+                    meterRegistry.counter("smartdoc.chat.admission.rejected", "reason", "queue_timeout").increment();
+                    return Flux.just(sseUtil.buildStatusSseMessage("busy", "排队超时"),
+                            sseUtil.buildJsonSseMessage("当前提问人数较多，排队超时，请稍后再试。", null));
+                })
+                .doOnCancel(() -> abandon(ticket));
+
+        return Flux.concat(
+                Mono.just(sseUtil.buildStatusSseMessage("queued", "正在排队，前面还有 " + (position - 1) + " 个请求")),
+                waitAndRun);
+    }
+
+    /**
+     * 执行问答，并在结束时释放名额
+     */
+    private Flux<String> run(Ticket ticket, Supplier<Flux<String>> chat, SecurityContext securityContext,
+                             String tier, long admittedAt) {
+        long startedAt = System.nanoTime();
+        Timer.builder("smartdoc.chat.queue.wait")
+                .tag("tier", tier)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.ofNanos(startedAt - admittedAt));
+
+        return Flux.defer(() -> {
+                    SecurityContext previous = SecurityContextHolder.getContext();
+                    SecurityContextHolder.setContext(securityContext);
+                    try {
+                        return chat.get();
+                    } finally {
+                        SecurityContextHolder.setContext(previous);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> {
+                    release(ticket);
+                    Timer.builder("smartdoc.chat.latency")
+                            .tag("tier", tier)
+                            .tag("outcome", signal.name().toLowerCase(Locale.ROOT))
+                            .publishPercentileHistogram()
+                            .register(meterRegistry)
+                            .record(Duration.ofNanos(System.nanoTime() - admittedAt));
+                });
+    }
+
+    /**
+     * 计算新请求的虚拟完成时间，调用方需持有 this 锁
+     */
+    private double nextFinishTag(Long tenantId, double weight) {
+        if (lastFinishTags.size() > MAX_IDLE_ENTRIES) {
+            // 完成时间早于系统虚拟时间的租户已无积压，记录可以丢弃
+            lastFinishTags.values().removeIf(tag -> tag <= virtualTime);
+        }
+        double start = Math.max(virtualTime, lastFinishTags.getOrDefault(tenantId, 0.0));
+        double finish = start + 1.0 / Math.max(weight, 0.01);
+        lastFinishTags.put(tenantId, finish);
+        return finish;
+    }
+
+    /**
+     * 释放名额并调度排队中的请求，同一个请求只释放一次
+     */
+    private void release(Ticket ticket) {
+        if (!ticket.released().compareAndSet(false, true)) {
+            return;
+        }
+
+        List<Ticket> started = new ArrayList<>();
+        synchronized (this) {
+            running--;
+            while (running < admissionConfig.getMaxConcurrent() && !queue.isEmpty()) {
+                Ticket next = queue.poll();
+                if (next.state().compareAndSet(WAITING, STARTED)) {
+                    running++;
+                    virtualTime = Math.max(virtualTime, next.finishTag());
+                    started.add(next);
+                }
+            }
+        }
+        // 在锁外唤醒，避免在锁内执行下游订阅逻辑
+        started.forEach(next -> next.ready().complete(null));
+    }
+
+    /**
+     * 放弃排队中的请求；如果已经被调度但还没开始执行，则归还名额
+     */
+    private void abandon(Ticket ticket) {
+        if (ticket.state().compareAndSet(WAITING, ABANDONED)) {
+            synchronized (this) {
+                queue.remove(ticket);
+            }
+        } else {
+            release(ticket);
+        }
+    }
+
+    private TokenBucket bucket(String key, ChatAdmissionConfig.Bucket config) {
+        if (buckets.size() > MAX_IDLE_ENTRIES) {
+            // 已补满的令牌桶与新建的桶等价，可以回收
+            buckets.values().removeIf(TokenBucket::isFull);
+        }
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(config.getCapacity(), config.getRefillPerMinute()));
+    }
+
+    private Flux<String> reject(String reason, String message) {
+        meterRegistry.counter("smartdoc.chat.admission.rejected", "reason", reason).increment();
+        log.warn("问答请求被拒绝，原因: {}", reason);
+        return Flux.just(sseUtil.buildStatusSseMessage("busy", reason),
+                sseUtil.buildJsonSseMessage(message, null));
+    }
+
+    /**
+     * 公平队列中的请求
+     */
+    private record Ticket(double finishTag, long sequence, CompletableFuture<Void> ready,
+                          AtomicInteger state, AtomicBoolean released) {
+    }
+}
@@ -0,0 +1,308 @@
+package com.mtmn.smartdoc.service;
+
+import com.mtmn.smartdoc.common.CustomException;
+import com.mtmn.smartdoc.po.StoredObject;
+import com.mtmn.smartdoc.repository.StoredObjectRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 内容寻址存储服务
+ * 按文件内容的 SHA-256 去重，相同内容在 MinIO 中只保存一份，并通过引用计数管理对象的生命周期
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/15 09:40
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class ContentStoreService {
+
+    /**
+     * 由原始文件派生的对象（向量缓存等）的路径前缀，后接内容哈希
+     */
+    public static final String DERIVED_PREFIX = "derived/";
+
+    private final StoredObjectRepository storedObjectRepository;
+    private final MinioService minioService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 存储结果
+     *
+     * @param contentHash  文件内容的 SHA-256
+     * @param filePath     MinIO 中的对象路径（可能是已存在的对象）
+     * @param fileSize     文件大小
+     * @param deduplicated 是否复用了已存储的相同内容
+     */
+    public record StoredContent(String contentHash, String filePath, long fileSize, boolean deduplicated) {
+    }
+
+    /**
+     * 已上传但尚未登记的内容
+     *
+     * @param contentHash  文件内容的 SHA-256
+     * @param uploadedPath 本次上传的对象路径；相同内容已存储、没有上传时为 null
+     * @param fileSize     文件大小
+     */
+    public record UploadedContent(String contentHash, String uploadedPath, long fileSize) {
+    }
+
+    /**
+     * 上传文件但不登记，不访问数据库的写路径，调用方随后在事务中调用 register(UploadedContent)
+     *
+     * 实现思路：
+     * 1. 流式读取 MultipartFile 计算 SHA-256，文件已由容器缓存在本地，读取不产生网络传输
+     * 2. 用不加锁的普通查询判断相同内容是否已存储，已存储时不再上传
+     * 3. 否则上传到 MinIO，返回本次上传的对象路径
+     *
+     * @param file 上传的文件
+     * @return 待登记的内容
+     * @throws CustomException 读取或上传失败时
+     */
+    public UploadedContent upload(MultipartFile file) {
+        String contentHash;
+        try (InputStream inputStream = file.getInputStream()) {
+            contentHash = sha256(inputStream);
+        } catch (Exception e) {
+            log.error("计算文件哈希失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "读取上传文件失败");
+        }
+
+        if (storedObjectRepository.findByContentHash(contentHash).isPresent()) {
+            return new UploadedContent(contentHash, null, file.getSize());
+        }
+        String filePath = minioService.uploadFile(file, file.getOriginalFilename());
+        return new UploadedContent(contentHash, filePath, file.getSize());
+    }
+
+    /**
+     * 登记 upload 返回的内容，应在调用方的事务中执行
+     *
+     * 实现思路：
+     * 1. 本次上传了对象时按内容哈希插入或引用计数加一
+     * 2. 没有上传（相同内容已存储）时对已有记录引用计数加一；记录在上传判断之后被删除时登记失败，由调用方重试
+     *
+     * @param content 待登记的内容
+     * @return 存储结果
+     * @throws CustomException 已存储的内容在登记前被删除时
+     */
+    @Transactional
+    public StoredContent register(UploadedContent content) {
+        if (content.uploadedPath() != null) {
+            return register(content.contentHash(), content.uploadedPath(), content.fileSize());
+        }
+        return reference(content.contentHash())
+                .orElseThrow(() -> new CustomException(500, "存储对象已被删除，请重新上传"));
+    }
+
+    /**
+     * 删除登记失败的内容本次上传的对象
+     *
+     * @param content 待登记的内容
+     */
+    public void discard(UploadedContent content) {
+        if (content.uploadedPath() == null) {
+            return;
+        }
+        try {
+            minioService.deleteFile(content.uploadedPath());
+        } catch (Exception e) {
+            log.warn("删除未登记的上传对象失败: {}", content.uploadedPath(), e);
+        }
+    }
+
+    /**
+     * 登记已经上传到 MinIO 的对象
+     *
+     * 实现思路：
+     * 1. 插入存储记录，内容哈希已存在时改为对已有记录引用计数加一（单条 SQL 完成，不存在并发窗口）
+     * 2. 如果最终引用的是已有对象，则在事务提交后删除刚刚上传的重复对象；事务回滚时由调用方删除
+     *
+     * @param contentHash 文件内容的 SHA-256，通常在上传的同时计算
+     * @param filePath    刚上传的对象路径
+     * @param fileSize    文件大小
+     * @return 存储结果，filePath 为最终引用的对象路径
+     */
+    @Transactional
+    public StoredContent register(String contentHash, String filePath, long fileSize) {
+        storedObjectRepository.insertOrIncrement(contentHash, filePath, fileSize);
+        StoredObject storedObject = storedObjectRepository.findByContentHash(contentHash)
+                .orElseThrow(() -> new CustomException(500, "登记存储对象失败"));
+
+        if (!storedObject.getFilePath().equals(filePath)) {
+            afterCommit(() -> minioService.deleteFile(filePath));
+            meterRegistry.counter("smartdoc.storage.dedup.hit").increment();
+            meterRegistry.counter("smartdoc.storage.dedup.bytes").increment(fileSize);
+            log.info("内容已存在，删除重复上传的对象: {} -> {}", filePath, storedObject.getFilePath());
+            return new StoredContent(contentHash, storedObject.getFilePath(), fileSize, true);
+        }
+        return new StoredContent(contentHash, filePath, fileSize, false);
+    }
+
+    /**
+     * 释放对象引用
+     *
+     * 实现思路：
+     * 1. 未登记的对象（去重之前上传的旧文件）只被一个文档引用，直接删除对象和解析文本
+     * 2. 已登记的对象引用计数减一，只有计数减到0并且成功删除记录的调用方才删除 MinIO 对象和派生对象（向量缓存、解析文本）
+     * 3. MinIO 删除放在事务提交之后执行，事务回滚时不会误删仍被引用的文件
+     * 4. 派生对象按内容哈希共享路径，提交后相同内容可能已被重新上传并登记，
+     *    由 deleteDerived 在删除前再次确认该内容哈希已没有存储记录
+     *
+     * @param filePath 文档记录中的对象路径
+     */
+    @Transactional
+    public void release(String filePath) {
+        Optional<StoredObject> storedObjectOpt = storedObjectRepository.findByFilePath(filePath);
+        if (storedObjectOpt.isEmpty()) {
+            afterCommit(() -> {
+                minioService.deleteFile(filePath);
+                minioService.deleteByPrefix(ParsedTextService.textObjectPrefix(filePath));
+            });
+            return;
+        }
+
+        StoredObject storedObject = storedObjectOpt.get();
+        storedObjectRepository.decrementRefCount(storedObject.getId());
+        if (storedObjectRepository.deleteIfUnreferenced(storedObject.getId()) == 1) {
+            String contentHash = storedObject.getContentHash();
+            afterCommit(() -> {
+                minioService.deleteFile(filePath);
+                minioService.deleteByPrefix(ParsedTextService.textObjectPrefix(filePath));
+                deleteDerived(contentHash);
+            });
+            log.info("对象已无引用，删除: {}", filePath);
+        } else {
+            log.info("对象仍被其他文档引用，保留: {}", filePath);
+        }
+    }
+
+    /**
+     * 删除内容哈希下的派生对象（向量缓存等）
+     * 派生对象按内容哈希共享路径，释放引用之后相同内容可能已被重新上传并登记，
+     * 删除前确认该内容哈希已没有存储记录，应在释放引用的事务提交之后调用
+     *
+     * @param contentHash 内容哈希
+     */
+    public void deleteDerived(String contentHash) {
+        if (storedObjectRepository.findByContentHash(contentHash).isPresent()) {
+            log.info("相同内容已被重新上传，保留派生对象: {}", contentHash);
+            return;
+        }
+        minioService.deleteByPrefix(DERIVED_PREFIX + contentHash + "/");
+    }
+
+    /**
+     * 待删除的 MinIO 对象
+     *
+     * @param objectNames   已无引用的原始对象路径
+     * @param prefixes      需要一并清理的解析文本路径前缀
+     * @param contentHashes 已无存储记录的内容哈希，删除时通过 {@link #deleteDerived(String)} 清理派生对象
+     */
+    public record UnreferencedObjects(List<String> objectNames, List<String> prefixes, List<String> contentHashes) {
+    }
+
+    /**
+     * 批量释放对象引用，不删除 MinIO 对象，由调用方在事务提交后异步删除
+     *
+     * 实现思路：
+     * 1. 按对象路径统计引用次数，同一文件在知识库中出现多次时只需更新一次
+     * 2. 一次 IN 查询取出所有已登记的存储对象，按引用次数原子地减少计数
+     * 3. 计数减到0并成功删除记录的对象，以及未登记的旧文件，连同解析文本前缀一起返回；
+     *    按内容哈希共享的派生对象只返回内容哈希，由调用方在删除时确认相同内容没有被重新登记
+     *
+     * @param filePaths 文档记录中的对象路径
+     * @return 已无引用、需要从 MinIO 删除的对象
+     */
+    @Transactional
+    public UnreferencedObjects releaseAll(List<String> filePaths) {
+        List<String> objectNames = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        List<String> contentHashes = new ArrayList<>();
+        if (filePaths.isEmpty()) {
+            return new UnreferencedObjects(objectNames, prefixes, contentHashes);
+        }
+
+        Map<String, Long> counts = filePaths.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        Map<String, StoredObject> storedObjects = storedObjectRepository.findByFilePathIn(counts.keySet()).stream()
+                .collect(Collectors.toMap(StoredObject::getFilePath, Function.identity()));
+
+        counts.forEach((filePath, count) -> {
+            StoredObject storedObject = storedObjects.get(filePath);
+            if (storedObject == null) {
+                objectNames.add(filePath);
+                prefixes.add(ParsedTextService.textObjectPrefix(filePath));
+                return;
+            }
+            storedObjectRepository.decrementRefCountBy(storedObject.getId(), count);
+            if (storedObjectRepository.deleteIfUnreferenced(storedObject.getId()) == 1) {
+                objectNames.add(filePath);
+                prefixes.add(ParsedTextService.textObjectPrefix(filePath));
+                contentHashes.add(storedObject.getContentHash());
+            }
+        });
+        log.info("释放 {} 个文档引用，其中 {} 个对象已无引用", filePaths.size(), objectNames.size());
+        return new UnreferencedObjects(objectNames, prefixes, contentHashes);
+    }
+
+    /**
+     * 已存储相同内容时引用计数加一
+     */
+    private Optional<StoredContent> reference(String contentHash) {
+        if (storedObjectRepository.incrementRefCount(contentHash) == 0) {
+            return Optional.empty();
+        }
+        return storedObjectRepository.findByContentHash(contentHash).map(storedObject -> {
+            meterRegistry.counter("smartdoc.storage.dedup.hit").increment();
+            meterRegistry.counter("smartdoc.storage.dedup.bytes").increment(storedObject.getFileSize());
+            log.info("内容已存在，复用对象: {}", storedObject.getFilePath());
+            return new StoredContent(contentHash, storedObject.getFilePath(), storedObject.getFileSize(), true);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    action.run();
+                } catch (Exception e) {
+                    log.error("删除 MinIO 对象失败: {}", e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    private static String sha256(InputStream inputStream) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (DigestInputStream digestStream = new DigestInputStream(inputStream, digest)) {
+            digestStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
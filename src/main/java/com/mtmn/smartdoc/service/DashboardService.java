@@ -4,9 +4,7 @@ import com.mtmn.smartdoc.dto.DashboardStatisticsDto;
 import com.mtmn.smartdoc.dto.UserActivityDto;
 import com.mtmn.smartdoc.po.User;
 import com.mtmn.smartdoc.po.UserActivity;
-import com.mtmn.smartdoc.repository.DocumentRepository;
 import com.mtmn.smartdoc.repository.UserActivityRepository;
-import com.mtmn.smartdoc.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.data.domain.Page;
@@ -32,16 +30,17 @@ import java.util.stream.Collectors;
 public class DashboardService {
 
     private final UserActivityRepository userActivityRepository;
-    private final DocumentRepository documentRepository;
-    private final UserRepository userRepository;
+    private final UserStatisticsService userStatisticsService;
+    private final UserCacheService userCacheService;
+    private final ActivityEventBus activityEventBus;
     
     /**
      * 从认证信息中获取用户对象
      * 
      * 实现思路：
      * 1. 检查认证信息的有效性和认证状态
-     * 2. 从认证信息中提取用户名
-     * 3. 根据用户名从数据库查询用户实体
+     * 2. 认证主体已经是用户实体时直接使用，不再查询数据库
+     * 3. 否则按用户名从用户缓存获取用户实体
      * 4. 如果查询失败则返回null，便于调用方处理
      * 
      * @param authentication Spring Security的认证信息
@@ -52,19 +51,21 @@ public class DashboardService {
             return null;
         }
         
-        String username = authentication.getName();
-        return userRepository.findByUsername(username).orElse(null);
+        if (authentication.getPrincipal() instanceof User user) {
+            return user;
+        }
+        return userCacheService.getUser(authentication.getName()).orElse(null);
     }
     
     /**
-     * 记录用户活动到数据库
+     * 记录用户活动
      * 
      * 实现思路：
      * 1. 从认证信息中提取用户实体
      * 2. 验证用户的有效性，无效用户记录警告并跳过
      * 3. 构建UserActivity实体对象，包含活动详情
      * 4. 设置当前时间作为活动时间戳
-     * 5. 保存活动记录到数据库
+     * 5. 发布到活动事件总线，由后台线程批量写入数据库
      * 6. 捕获异常并记录错误日志，不影响主业务流程
      * 
      * @param authentication 用户认证信息
@@ -90,7 +91,7 @@ public class DashboardService {
                     .createdAt(LocalDateTime.now())
                     .build();
             
-            userActivityRepository.save(activity);
+            activityEventBus.publish(activity);
         } catch (Exception e) {
             log.error("记录用户活动失败", e);
             // 这里只记录日志，不抛出异常，避免影响主要业务流程
@@ -103,10 +104,8 @@ public class DashboardService {
      * 实现思路：
      * 1. 从认证信息中提取用户实体
      * 2. 验证用户有效性，无效用户返回全零统计数据
-     * 3. 查询用户的文档总数
-     * 4. 分别统计各类型的分析活动数量
-     * 5. 包括关键词提取、安全检查、摘要生成、文档润色等
-     * 6. 构建并返回包含完整统计信息的DTO对象
+     * 3. 从用户统计服务读取预先计算的文档数和各类分析活动数量
+     * 4. 统计数据在文档和活动写入时增量更新，读取时最多按主键查询一次
      * 
      * @param authentication 用户认证信息
      * @return 仪表盘统计数据DTO，包含文档数和各类分析活动统计
@@ -118,24 +117,7 @@ public class DashboardService {
             return new DashboardStatisticsDto(0, 0, 0, 0, 0, 0);
         }
         
-        // 获取用户的文档总数
-        long documentCount = documentRepository.countByUserId(user.getId());
-        
-        // 获取用户的分析活动统计
-        long analysisCount = userActivityRepository.countAnalysisActivitiesByUserId(user.getId());
-        long keywordsCount = userActivityRepository.countByUserIdAndActivityType(user.getId(), "KEYWORDS");
-        long securityCount = userActivityRepository.countByUserIdAndActivityType(user.getId(), "SECURITY");
-        long summaryCount = userActivityRepository.countByUserIdAndActivityType(user.getId(), "SUMMARY");
-        long polishCount = userActivityRepository.countByUserIdAndActivityType(user.getId(), "POLISH");
-        
-        return DashboardStatisticsDto.builder()
-                .documents(documentCount)
-                .analysis(analysisCount)
-                .keywords(keywordsCount)
-                .security(securityCount)
-                .summary(summaryCount)
-                .polish(polishCount)
-                .build();
+        return userStatisticsService.getStatistics(user.getId());
     }
     
     /**
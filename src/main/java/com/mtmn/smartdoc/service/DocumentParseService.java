@@ -0,0 +1,509 @@
+package com.mtmn.smartdoc.service;
+
+import com.mtmn.smartdoc.common.ApacheTikaDocumentParser;
+import com.mtmn.smartdoc.common.CustomException;
+import com.mtmn.smartdoc.config.ParseConfig;
+import com.mtmn.smartdoc.utils.SampleDocuments;
+import dev.langchain4j.data.document.BlankDocumentException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文档解析服务
+ * 在独立的有界线程池中运行 Tika，限制单个文档的解析时间和提取字符数，
+ * 避免异常或超大文件长时间占用 CPU 或撑爆堆内存
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/16 14:20
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class DocumentParseService {
+
+    private final ParseConfig parseConfig;
+    private final MinioService minioService;
+    private final MeterRegistry meterRegistry;
+    private final AutoDetectParser autoDetectParser;
+    private final Detector tikaDetector;
+
+    private ApacheTikaDocumentParser documentParser;
+    private ThreadPoolExecutor parseExecutor;
+
+    /**
+     * 超时后被放弃、仍在运行的解析线程数
+     */
+    private final AtomicInteger abandonedThreads = new AtomicInteger();
+
+    /**
+     * 解析结果
+     *
+     * @param inputBytes 读取的原始文件字节数
+     * @param characters 写入的文本字符数
+     * @param truncated  是否因超过字符上限被截断
+     */
+    public record ParseResult(long inputBytes, long characters, boolean truncated) {
+    }
+
+    @PostConstruct
+    public void init() {
+        // 所有解析共享同一个 AutoDetectParser，不再每次解析都重新加载解析器和检测器
+        documentParser = new ApacheTikaDocumentParser(() -> autoDetectParser, null, null, null, false);
+
+        int threads = Math.max(1, parseConfig.getThreads());
+        AtomicInteger threadIndex = new AtomicInteger();
+        parseExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, parseConfig.getQueueCapacity())),
+                r -> {
+                    Thread thread = new Thread(r, "tika-parse-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        meterRegistry.gauge("smartdoc.parse.queue.size", parseExecutor, executor -> executor.getQueue().size());
+        meterRegistry.gauge("smartdoc.parse.active", parseExecutor, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge("smartdoc.parse.abandoned", abandonedThreads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        parseExecutor.shutdownNow();
+    }
+
+    /**
+     * 应用启动后预热解析器
+     *
+     * 实现思路：
+     * 1. 为每种支持上传的格式生成一个内存中的最小示例文档
+     * 2. 依次做类型检测和完整解析，触发各格式解析器的类加载、字体和编码表等懒加载初始化
+     * 3. 预热失败只记录日志，不影响启动，首个真实请求的耗时与稳定状态一致
+     * 4. 在独立的后台线程执行，ApplicationReadyEvent 的监听器返回后应用才会标记为就绪，同步预热会推迟就绪
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread thread = new Thread(this::warmUpParsers, "tika-warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void warmUpParsers() {
+        long startTime = System.nanoTime();
+        for (SampleDocuments.Sample sample : SampleDocuments.all()) {
+            long sampleStart = System.nanoTime();
+            try {
+                Metadata metadata = new Metadata();
+                metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, sample.fileName());
+                String mediaType;
+                try (InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(sample.content()))) {
+                    mediaType = tikaDetector.detect(inputStream, metadata).toString();
+                }
+                try (InputStream inputStream = new ByteArrayInputStream(sample.content())) {
+                    documentParser.parse(inputStream, Writer.nullWriter());
+                }
+                log.debug("解析器预热: {} ({}), 耗时 {} ms", sample.fileName(), mediaType,
+                        (System.nanoTime() - sampleStart) / 1_000_000);
+            } catch (Exception e) {
+                // 空容器等示例无法完整解析，但解析器已经完成加载
+                log.debug("解析器预热: {} 解析失败（已完成加载）: {}", sample.fileName(), e.getMessage());
+            }
+        }
+        log.info("解析器预热完成，耗时 {} ms", (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    /**
+     * 解析 MinIO 中的文件，把提取的文本以 gzip 压缩写入目标文件
+     *
+     * 实现思路：
+     * 1. 在调用线程打开文件输入流，把解析任务提交到有界线程池，队列已满时直接拒绝。
+     *    文件在本地缓存中（或可以写入本地缓存）时用 TikaInputStream 直接打开缓存文件，
+     *    需要随机访问的解析器直接读取该文件，不再把输入流复制到临时文件；否则是一次流式 GET
+     * 2. 解析线程把文本边提取边压缩写入同目录下的临时文件，内存中不保留完整文本；
+     *    只有在解析完成且未被放弃时才把临时文件移动为目标文件
+     * 3. 写入的字符数超过上限时停止解析，保留已提取的部分并标记为截断
+     * 4. 调用线程最多等待超时时间，超时后中断解析线程并关闭输入流，使卡住的解析尽快退出。
+     *    CPU 密集的解析可能既不响应中断也不再读取输入，此时放弃该线程，为线程池补充一个工作线程，
+     *    线程池的解析能力不因卡住的文档而减少；被放弃的线程结束后线程池恢复原来的大小，
+     *    被放弃的线程数达到上限后不再补充
+     * 5. 按文件格式记录解析耗时、原始大小和提取字符数的分布，便于发现解析慢的格式
+     *
+     * @param filePath 原始文件在 MinIO 中的路径
+     * @param target   文本输出文件（gzip 压缩的 UTF-8 文本）
+     * @return 解析结果
+     * @throws CustomException 解析失败、超时或任务过多时
+     */
+    public ParseResult parseToFile(String filePath, Path target) {
+        String format = format(filePath);
+        long startTime = System.nanoTime();
+
+        InputStream inputStream = openInput(filePath);
+        ParseTask task = new ParseTask(inputStream, target);
+
+        Future<ParseResult> future;
+        try {
+            future = parseExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            closeQuietly(inputStream);
+            recordDuration(format, "rejected", startTime);
+            log.warn("解析任务过多，拒绝解析: {}", filePath);
+            throw new CustomException(503, "当前解析任务过多，请稍后重试");
+        }
+
+        try {
+            ParseResult result;
+            try {
+                result = future.get(parseConfig.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (!task.abandon()) {
+                    // 超时的同时解析已经完成，目标文件正在或已经写好
+                    result = future.get();
+                } else {
+                    future.cancel(true);
+                    // 部分解析器不响应中断，关闭输入流使其读取时抛出异常退出
+                    closeQuietly(inputStream);
+                    recordDuration(format, "timeout", startTime);
+                    log.warn("文档解析超时（{}），已中断: {}", parseConfig.getTimeout(), filePath);
+                    throw new CustomException(504, "文档解析超时");
+                }
+            }
+
+            recordDuration(format, result.truncated() ? "truncated" : "success", startTime);
+            DistributionSummary.builder("smartdoc.parse.input.size")
+                    .baseUnit("bytes")
+                    .tag("format", format)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(result.inputBytes());
+            DistributionSummary.builder("smartdoc.parse.output.chars")
+                    .tag("format", format)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(result.characters());
+
+            if (result.truncated()) {
+                log.warn("文档文本超过 {} 个字符，已截断: {}", parseConfig.getMaxCharacters(), filePath);
+            }
+            log.info("文档解析完成: {}, 大小: {} 字节, 字符数: {}, 耗时: {} ms", filePath, result.inputBytes(),
+                    result.characters(), (System.nanoTime() - startTime) / 1_000_000);
+            return result;
+        } catch (ExecutionException e) {
+            recordDuration(format, "error", startTime);
+            Throwable cause = e.getCause();
+            log.error("解析文档失败: {}, {}", filePath, cause.getMessage(), cause);
+            throw new CustomException(500, "解析文档失败: " + cause.getMessage());
+        } catch (InterruptedException e) {
+            task.abandon();
+            future.cancel(true);
+            closeQuietly(inputStream);
+            Thread.currentThread().interrupt();
+            throw new CustomException(500, "文档解析被中断");
+        } finally {
+            if (future.isDone()) {
+                closeQuietly(inputStream);
+            }
+        }
+    }
+
+    /**
+     * 放弃一个超时后仍在运行的解析线程，未达到上限时为线程池补充一个工作线程
+     * 先调大最大线程数再调大核心线程数，核心线程数增加时会立即启动新线程处理排队的任务
+     */
+    private synchronized void replaceWorker() {
+        int abandoned = abandonedThreads.incrementAndGet();
+        if (abandoned > parseConfig.getMaxAbandonedThreads()) {
+            log.error("被放弃的解析线程数（{}）已达上限，不再补充工作线程", abandoned);
+            return;
+        }
+        parseExecutor.setMaximumPoolSize(parseExecutor.getMaximumPoolSize() + 1);
+        parseExecutor.setCorePoolSize(parseExecutor.getCorePoolSize() + 1);
+        log.warn("解析线程超时后未退出，已补充工作线程，当前被放弃的线程数: {}", abandoned);
+    }
+
+    /**
+     * 被放弃的解析线程结束后，撤销为它补充的工作线程
+     */
+    private synchronized void releaseWorker() {
+        int abandoned = abandonedThreads.getAndDecrement();
+        if (abandoned > parseConfig.getMaxAbandonedThreads()) {
+            return;
+        }
+        parseExecutor.setCorePoolSize(parseExecutor.getCorePoolSize() - 1);
+        parseExecutor.setMaximumPoolSize(parseExecutor.getMaximumPoolSize() - 1);
+        log.info("被放弃的解析线程已结束，当前被放弃的线程数: {}", abandoned - 1);
+    }
+
+    /**
+     * 打开解析的输入流
+     * 本地缓存文件以 TikaInputStream 打开，Tika 识别到底层文件后直接随机读取；
+     * 包装成其他输入流会让 Tika 再复制一份临时文件，因此只有 MinIO 的文件流才包装计数
+     */
+    private InputStream openInput(String filePath) {
+        Optional<Path> cached = minioService.getCachedFile(filePath);
+        if (cached.isPresent()) {
+            try {
+                return TikaInputStream.get(cached.get());
+            } catch (IOException e) {
+                // 文件刚好被淘汰，直接读取 MinIO
+                log.debug("读取本地缓存文件失败: {}, {}", filePath, e.getMessage());
+            }
+        }
+        return new CountingInputStream(minioService.getFileContent(filePath));
+    }
+
+    /**
+     * 在解析线程中执行，文本经字符上限检查后压缩写入目标文件
+     */
+    private ParseResult parse(InputStream inputStream, Path target) throws IOException {
+        LimitedWriter writer = new LimitedWriter(new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(target)), StandardCharsets.UTF_8)),
+                parseConfig.getMaxCharacters());
+        try (writer) {
+            documentParser.parse(inputStream, writer);
+        } catch (BlankDocumentException e) {
+            log.debug("文档内容为空");
+        } catch (RuntimeException e) {
+            // 超过字符上限时由写入端抛出异常中止解析，已写入的文本保留
+            if (!writer.isLimitReached()) {
+                throw e;
+            }
+        }
+        long inputBytes = inputStream instanceof CountingInputStream counting
+                ? counting.getCount() : ((TikaInputStream) inputStream).getLength();
+        return new ParseResult(inputBytes, writer.getWritten(), writer.isLimitReached());
+    }
+
+    /**
+     * 解析任务
+     * 文本先写入目标文件同目录下的临时文件，解析完成且未被调用线程放弃时才移动为目标文件，
+     * 超时后仍在运行的线程不会再写入调用方已经处理过的目标文件
+     */
+    private final class ParseTask implements Callable<ParseResult> {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+        private static final int ABANDONED = 3;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final InputStream inputStream;
+        private final Path target;
+
+        ParseTask(InputStream inputStream, Path target) {
+            this.inputStream = inputStream;
+            this.target = target;
+        }
+
+        @Override
+        public ParseResult call() throws IOException {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                throw new CancellationException("解析任务已被放弃");
+            }
+            Path partFile = null;
+            try {
+                partFile = Files.createTempFile(target.toAbsolutePath().getParent(), "smartdoc_parse_", ".part");
+                ParseResult result = parse(inputStream, partFile);
+                if (!state.compareAndSet(RUNNING, FINISHED)) {
+                    throw new CancellationException("解析任务已被放弃");
+                }
+                Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                partFile = null;
+                return result;
+            } finally {
+                if (partFile != null) {
+                    Files.deleteIfExists(partFile);
+                }
+                if (!state.compareAndSet(RUNNING, FINISHED) && state.get() == ABANDONED) {
+                    releaseWorker();
+                }
+            }
+        }
+
+        /**
+         * 放弃任务，尚未开始的任务不再执行，正在运行的线程由线程池补充
+         *
+         * @return false 表示任务已经完成，调用方应获取结果
+         */
+        boolean abandon() {
+            if (state.compareAndSet(QUEUED, ABANDONED)) {
+                return true;
+            }
+            if (state.compareAndSet(RUNNING, ABANDONED)) {
+                replaceWorker();
+                return true;
+            }
+            return state.get() != FINISHED;
+        }
+    }
+
+    private void recordDuration(String format, String outcome, long startTime) {
+        Timer.builder("smartdoc.parse.duration")
+                .tag("format", format)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 以扩展名作为格式标签，限制取值范围避免指标维度膨胀
+     */
+    private static String format(String filePath) {
+        int dot = filePath.lastIndexOf('.');
+        if (dot < 0 || dot == filePath.length() - 1) {
+            return "unknown";
+        }
+        String extension = filePath.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return extension.length() <= 8 && extension.chars().allMatch(Character::isLetterOrDigit) ? extension : "other";
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 统计读取字节数的输入流
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * 限制写入字符数的输出，超过上限时写入剩余额度后抛出异常中止解析
+     * 各写入方法直接把（截取到额度内的）原始参数交给下层，不复制字符
+     */
+    private static class LimitedWriter extends FilterWriter {
+
+        private final long maxCharacters;
+        private long written;
+        private boolean limitReached;
+
+        LimitedWriter(Writer out, long maxCharacters) {
+            super(out);
+            this.maxCharacters = maxCharacters;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            int allowed = allowed(1);
+            if (allowed > 0) {
+                out.write(c);
+            }
+            commit(1, allowed);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int allowed = allowed(len);
+            out.write(cbuf, off, allowed);
+            commit(len, allowed);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            int allowed = allowed(len);
+            out.write(str, off, allowed);
+            commit(len, allowed);
+        }
+
+        @Override
+        public Writer append(CharSequence csq) throws IOException {
+            CharSequence sequence = csq == null ? "null" : csq;
+            return append(sequence, 0, sequence.length());
+        }
+
+        @Override
+        public Writer append(CharSequence csq, int start, int end) throws IOException {
+            CharSequence sequence = csq == null ? "null" : csq;
+            int len = end - start;
+            int allowed = allowed(len);
+            out.append(sequence, start, start + allowed);
+            commit(len, allowed);
+            return this;
+        }
+
+        /**
+         * 本次写入在额度内可以写出的字符数
+         */
+        private int allowed(int len) {
+            return (int) Math.min(len, Math.max(0, maxCharacters - written));
+        }
+
+        private void commit(int requested, int allowed) throws IOException {
+            written += allowed;
+            if (allowed < requested) {
+                limitReached = true;
+                throw new IOException("文本长度超过上限 " + maxCharacters);
+            }
+        }
+
+        long getWritten() {
+            return written;
+        }
+
+        boolean isLimitReached() {
+            return limitReached;
+        }
+    }
+}
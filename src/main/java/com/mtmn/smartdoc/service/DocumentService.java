@@ -1,16 +1,38 @@
 package com.mtmn.smartdoc.service;
 
+import com.mtmn.smartdoc.common.KeysetCursor;
+import com.mtmn.smartdoc.dto.UserDocumentItem;
 import com.mtmn.smartdoc.po.DocumentPO;
 import com.mtmn.smartdoc.po.User;
+import com.mtmn.smartdoc.repository.DocumentBatchRepository;
 import com.mtmn.smartdoc.repository.DocumentRepository;
+import com.mtmn.smartdoc.vo.CursorPage;
+import com.mtmn.smartdoc.vo.StreamUploadResult;
+import com.mtmn.smartdoc.vo.UploadFileResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * 文档服务
@@ -25,20 +47,68 @@ public class DocumentService {
 
     private final DocumentRepository documentRepository;
     private final MinioService minioService;
+    private final ContentStoreService contentStoreService;
+    private final DocumentBatchRepository documentBatchRepository;
+    private final UserStatisticsService userStatisticsService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${minio.upload.batch-parallelism:4}")
+    private int batchParallelism;
+
+    private ExecutorService batchUploadExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        batchUploadExecutor = Executors.newFixedThreadPool(Math.max(1, batchParallelism), r -> {
+            Thread thread = new Thread(r, "document-upload-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        batchUploadExecutor.shutdownNow();
+    }
 
     /**
      * 获取用户的所有文档
      * 
      * 实现思路：
-     * 1. 通过DocumentRepository查询指定用户的所有文档
-     * 2. 按创建时间倒序排列，最新的文档在前
-     * 3. 返回完整的文档列表
+     * 1. 通过DocumentRepository按用户ID查询文档列表投影
+     * 2. 只查询列表展示需要的列，不加载存储路径、内容哈希等字段，也不创建受管实体
+     * 3. 按创建时间倒序排列，最新的文档在前
      * 
      * @param user 用户实体对象
      * @return 用户的文档列表，按创建时间倒序排列
      */
-    public List<DocumentPO> getUserDocuments(User user) {
-        return documentRepository.findByUserOrderByCreatedAtDesc(user);
+    public List<UserDocumentItem> getUserDocuments(User user) {
+        return documentRepository.findItemsByUserId(user.getId());
+    }
+
+    /**
+     * 键集分页获取用户的文档
+     * 
+     * 实现思路：
+     * 1. 解析游标，没有游标时查询第一页
+     * 2. 有游标时只查询 (创建时间, ID) 小于游标位置的文档，由 (user_id, created_at) 索引直接定位，
+     *    不像 OFFSET 分页那样越往后扫描的行越多
+     * 3. 多查询一条记录判断是否还有下一页，并以本页最后一条记录生成下一页的游标
+     * 
+     * @param user 用户实体对象
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页条数，最多100条
+     * @return 一页文档，按创建时间倒序排列
+     */
+    public CursorPage<UserDocumentItem> getUserDocumentsPage(User user, String cursor, int size) {
+        int pageSize = CursorPage.clampSize(size);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<UserDocumentItem> rows = position == null
+                ? documentRepository.findUserPage(user.getId(), limit)
+                : documentRepository.findUserPageAfter(user.getId(), position.createdAt(), position.id(), limit);
+        return CursorPage.of(rows, pageSize, UserDocumentItem::createdAt, UserDocumentItem::id, Function.identity());
     }
 
     /**
@@ -46,12 +116,9 @@ public class DocumentService {
      * 
      * 实现思路：
      * 1. 提取文件的基本信息（原始文件名、类型、大小）
-     * 2. 调用MinIO服务将文件上传到对象存储
-     * 3. 获取文件在MinIO中的存储路径
-     * 4. 构建文档实体对象，包含文件信息和用户关联
-     * 5. 设置文档初始状态（未索引）
-     * 6. 保存文档记录到数据库
-     * 7. 使用事务确保数据一致性
+     * 2. 在事务之外计算内容哈希并上传到MinIO，相同内容已存在时不再重复上传；上传期间不占用数据库连接
+     * 3. 开启短事务：登记存储对象（引用计数），保存文档记录（初始状态为未索引）并更新用户的文档统计
+     * 4. 事务失败时删除本次上传的对象，避免留下无记录引用的文件
      * 
      * @param file 上传的文件
      * @param title 文档标题
@@ -59,28 +126,213 @@ public class DocumentService {
      * @param kid 关联的知识库ID
      * @return 保存后的文档实体对象
      */
-    @Transactional
     public DocumentPO uploadDocument(MultipartFile file, String title, User user, Long kid) {
         String originalFilename = file.getOriginalFilename();
         String fileType = file.getContentType();
         long fileSize = file.getSize();
         
-        // 上传文件到MinIO
-        String filePath = minioService.uploadFile(file, originalFilename);
-        
-        // 创建文档记录
-        DocumentPO document = DocumentPO.builder()
+        // 按内容去重后上传到MinIO，不在事务中
+        ContentStoreService.UploadedContent uploaded = contentStoreService.upload(file);
+
+        try {
+            return transactionTemplate.execute(status -> {
+                ContentStoreService.StoredContent stored = contentStoreService.register(uploaded);
+
+                // 创建文档记录
+                DocumentPO document = documentRepository.save(DocumentPO.builder()
+                        .title(title)
+                        .fileName(originalFilename)
+                        .fileType(fileType)
+                        .fileSize(fileSize)
+                        .filePath(stored.filePath())
+                        .contentHash(stored.contentHash())
+                        .user(user)
+                        .knowledgeBaseId(kid)
+                        .indexed(false)
+                        .build());
+                userStatisticsService.recordDocuments(user.getId(), 1);
+                return document;
+            });
+        } catch (RuntimeException e) {
+            contentStoreService.discard(uploaded);
+            throw e;
+        }
+    }
+
+    /**
+     * 批量上传文档到系统
+     * 
+     * 实现思路：
+     * 1. 跳过空文件，其余文件提交到上传线程池并行计算哈希并上传到MinIO（相同内容已存储时不上传），
+     *    上传阶段不访问数据库写路径，同时在途的文件数不超过 batch-parallelism
+     * 2. 每个文件在上传线程中独立计时，单个文件上传失败只记录失败原因，不影响其他文件
+     * 3. 全部上传完成后在同一个短事务中登记所有文件的存储对象、用 JDBC 批处理插入所有文档记录并更新统计，
+     *    引用计数和文档记录一起提交或一起回滚；按内容哈希顺序登记，并发的批量请求以相同顺序加锁
+     * 4. 事务失败时删除本批上传的对象，所有上传成功的文件标记为失败
+     * 5. 按文件在请求中的顺序返回每个文件的上传结果和耗时
+     * 
+     * @param files 上传的文件
+     * @param titles 与 files 一一对应的文档标题
+     * @param user 上传文档的用户
+     * @param kid 关联的知识库ID，可以为空
+     * @return 每个非空文件的上传结果
+     */
+    public List<UploadFileResult> uploadDocuments(MultipartFile[] files, String[] titles, User user, Long kid) {
+        long startTime = System.nanoTime();
+
+        List<CompletableFuture<UploadedFile>> futures = new ArrayList<>();
+        for (int i = 0; i < files.length; i++) {
+            if (!files[i].isEmpty()) {
+                MultipartFile file = files[i];
+                String title = titles[i];
+                int index = i;
+                futures.add(CompletableFuture.supplyAsync(() -> uploadFile(index, file, title), batchUploadExecutor));
+            }
+        }
+        List<UploadedFile> uploadedFiles = futures.stream().map(CompletableFuture::join).toList();
+        List<UploadedFile> succeeded = uploadedFiles.stream().filter(f -> f.content() != null).toList();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> registerAll(succeeded, user, kid));
+        } catch (Exception e) {
+            log.error("批量保存文档记录失败: {}", e.getMessage(), e);
+            for (UploadedFile uploadedFile : succeeded) {
+                contentStoreService.discard(uploadedFile.content());
+                uploadedFile.result().setSuccess(false);
+                uploadedFile.result().setDocumentId(null);
+                uploadedFile.result().setMessage("保存文档记录失败");
+            }
+        }
+
+        List<UploadFileResult> results = uploadedFiles.stream().map(UploadedFile::result).toList();
+        log.info("批量上传完成，文件数: {}, 成功: {}, 总耗时: {} ms", results.size(),
+                results.stream().filter(UploadFileResult::isSuccess).count(), (System.nanoTime() - startTime) / 1_000_000);
+        return results;
+    }
+
+    /**
+     * 在事务中登记上传的文件并批量插入文档记录，回填文档ID
+     */
+    private void registerAll(List<UploadedFile> uploadedFiles, User user, Long kid) {
+        if (uploadedFiles.isEmpty()) {
+            return;
+        }
+        Map<UploadedFile, ContentStoreService.StoredContent> stored = new HashMap<>();
+        uploadedFiles.stream()
+                .sorted(Comparator.comparing(f -> f.content().contentHash()))
+                .forEach(f -> stored.put(f, contentStoreService.register(f.content())));
+
+        List<DocumentPO> documents = uploadedFiles.stream()
+                .map(f -> DocumentPO.builder()
+                        .title(f.result().getTitle())
+                        .fileName(f.result().getFileName())
+                        .fileType(f.contentType())
+                        .fileSize(f.result().getSize())
+                        .filePath(stored.get(f).filePath())
+                        .contentHash(stored.get(f).contentHash())
+                        .user(user)
+                        .knowledgeBaseId(kid)
+                        .indexed(false)
+                        .build())
+                .toList();
+        documentBatchRepository.insertAll(documents);
+        for (int i = 0; i < documents.size(); i++) {
+            UploadFileResult result = uploadedFiles.get(i).result();
+            result.setDocumentId(documents.get(i).getId());
+            result.setDeduplicated(stored.get(uploadedFiles.get(i)).deduplicated());
+        }
+        userStatisticsService.recordDocuments(user.getId(), documents.size());
+    }
+
+    /**
+     * 在上传线程中上传单个文件，耗时只统计该文件自身的上传时间，不含排队时间
+     */
+    private UploadedFile uploadFile(int index, MultipartFile file, String title) {
+        long startTime = System.nanoTime();
+        UploadFileResult result = UploadFileResult.builder()
+                .index(index)
+                .fileName(file.getOriginalFilename())
                 .title(title)
-                .fileName(originalFilename)
-                .fileType(fileType)
-                .fileSize(fileSize)
-                .filePath(filePath)
-                .user(user)
-                .knowledgeBaseId(kid)
-                .indexed(false)
+                .size(file.getSize())
                 .build();
-        
-        return documentRepository.save(document);
+
+        ContentStoreService.UploadedContent content = null;
+        try {
+            content = contentStoreService.upload(file);
+            result.setSuccess(true);
+        } catch (Exception e) {
+            log.error("文件上传失败: {}, {}", file.getOriginalFilename(), e.getMessage());
+            result.setMessage(e.getMessage());
+        }
+        result.setElapsedMs((System.nanoTime() - startTime) / 1_000_000);
+        return new UploadedFile(result, content, file.getContentType());
+    }
+
+    /**
+     * 单个文件的上传结果，content 为空表示上传失败
+     */
+    private record UploadedFile(UploadFileResult result, ContentStoreService.UploadedContent content, String contentType) {
+    }
+
+    /**
+     * 以流式方式上传文档到系统
+     * 
+     * 实现思路：
+     * 1. 将请求体输入流直接交给MinIO服务分片上传，同时计算SHA-256和吞吐量；
+     *    上传在事务之外进行，慢速客户端上传大文件时不占用数据库连接
+     * 2. 上传完成后开启短事务：按SHA-256登记存储对象（相同内容已存在时引用已有对象并删除本次上传的重复对象），
+     *    保存文档记录（初始状态为未索引）并更新用户的文档统计
+     * 3. 事务失败时删除本次上传的对象，避免留下无记录引用的文件
+     * 4. 把文档ID和标题回填到上传结果中
+     * 
+     * @param inputStream 请求体输入流
+     * @param fileName 原始文件名
+     * @param contentType 文件类型
+     * @param title 文档标题
+     * @param user 上传文档的用户
+     * @param kid 关联的知识库ID
+     * @return 上传结果，包含文档ID、内容哈希和吞吐量
+     */
+    public StreamUploadResult uploadDocumentStream(InputStream inputStream, String fileName, String contentType,
+                                                   String title, User user, Long kid) {
+        StreamUploadResult result = minioService.uploadStream(inputStream, fileName, contentType);
+        String uploadedObject = result.getObjectName();
+
+        DocumentPO document;
+        try {
+            document = transactionTemplate.execute(status -> {
+                ContentStoreService.StoredContent stored = contentStoreService.register(
+                        result.getSha256(), uploadedObject, result.getSize());
+                result.setObjectName(stored.filePath());
+                result.setDeduplicated(stored.deduplicated());
+
+                DocumentPO saved = documentRepository.save(DocumentPO.builder()
+                        .title(title)
+                        .fileName(fileName)
+                        .fileType(contentType)
+                        .fileSize(result.getSize())
+                        .filePath(stored.filePath())
+                        .contentHash(stored.contentHash())
+                        .user(user)
+                        .knowledgeBaseId(kid)
+                        .indexed(false)
+                        .build());
+                userStatisticsService.recordDocuments(user.getId(), 1);
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            // 登记已随事务回滚，本次上传的对象没有任何记录引用
+            try {
+                minioService.deleteFile(uploadedObject);
+            } catch (Exception deleteError) {
+                log.warn("删除未登记的上传对象失败: {}", uploadedObject, deleteError);
+            }
+            throw e;
+        }
+
+        result.setDocumentId(document.getId());
+        result.setTitle(document.getTitle());
+        return result;
     }
 
     /**
@@ -89,9 +341,9 @@ public class DocumentService {
      * 实现思路：
      * 1. 验证文档是否属于指定用户，确保权限安全
      * 2. 根据文档ID查询文档详细信息
-     * 3. 调用MinIO服务删除对象存储中的文件
-     * 4. 处理MinIO删除失败的情况，记录错误但继续删除数据库记录
-     * 5. 从数据库中删除文档记录
+     * 3. 释放文件的存储引用，只有最后一个引用被释放时才在事务提交后删除对象存储中的文件
+     * 4. 释放引用失败时异常直接抛出，整个删除回滚（在同一事务中吞掉异常只会让提交时抛出 UnexpectedRollbackException）
+     * 5. 从数据库中删除文档记录，并更新用户的文档统计
      * 6. 使用事务确保数据一致性
      * 7. 返回删除操作的结果状态
      * 
@@ -114,16 +366,12 @@ public class DocumentService {
         
         DocumentPO document = documentOpt.get();
         
-        // 删除MinIO中的文件
-        try {
-            minioService.deleteFile(document.getFilePath());
-        } catch (Exception e) {
-            log.error("Error deleting file from MinIO: {}", e.getMessage(), e);
-            // 继续删除数据库记录，即使MinIO删除失败
-        }
+        // 释放文件引用，MinIO 对象在事务提交后删除
+        contentStoreService.release(document.getFilePath());
         
         // 删除数据库记录
         documentRepository.deleteById(documentId);
+        userStatisticsService.recordDocuments(user.getId(), -1);
         return true;
     }
 
@@ -221,6 +469,54 @@ public class DocumentService {
         return minioService.getFileUrl(document.getFilePath());
     }
 
+    /**
+     * 文档内容的元信息，用于服务端下载
+     *
+     * @param document    文档实体
+     * @param size        文件大小（字节）
+     * @param etag        实体标签，内容不变时保持不变
+     * @param contentType 内容类型
+     */
+    public record DocumentContent(DocumentPO document, long size, String etag, String contentType) {
+    }
+
+    /**
+     * 获取文档内容的元信息，供下载接口生成响应头和处理条件请求
+     * 
+     * 实现思路：
+     * 1. 调用getDocumentById方法获取文档并验证用户权限
+     * 2. 有内容哈希的文档直接以哈希作为ETag、以记录的大小作为长度，条件请求不需要访问MinIO
+     * 3. 历史文档没有内容哈希时，通过statObject获取大小和MinIO的ETag
+     * 4. 内容类型优先使用上传时记录的类型，缺失时使用MinIO中的类型
+     * 
+     * @param documentId 文档ID
+     * @param user 请求访问的用户
+     * @return 文档内容元信息，文档不存在或无权限访问时为空
+     */
+    public Optional<DocumentContent> getDocumentContent(Long documentId, User user) {
+        Optional<DocumentPO> documentOpt = getDocumentById(documentId, user);
+        if (documentOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        DocumentPO document = documentOpt.get();
+        if (document.getContentHash() != null && document.getFileSize() != null) {
+            return Optional.of(new DocumentContent(document, document.getFileSize(), document.getContentHash(),
+                    contentType(document.getFileType(), null)));
+        }
+
+        MinioService.ObjectInfo info = minioService.statFile(document.getFilePath());
+        return Optional.of(new DocumentContent(document, info.size(), info.etag().replace("\"", ""),
+                contentType(document.getFileType(), info.contentType())));
+    }
+
+    private static String contentType(String fileType, String fallback) {
+        if (fileType != null && fileType.contains("/")) {
+            return fileType;
+        }
+        return fallback != null ? fallback : "application/octet-stream";
+    }
+
     /**
      * 根据知识库ID获取文档列表
      * 
@@ -0,0 +1,146 @@
+package com.mtmn.smartdoc.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文档分块向量缓存服务
+ * 相同内容的文档在分块参数和嵌入模型一致时共享切分结果和向量，
+ * 同一份文件被上传到多个知识库时只需解析和向量化一次
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/15 10:20
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class EmbeddingCacheService {
+
+    private final MinioService minioService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 缓存的分块和向量，两个列表一一对应
+     */
+    public record CachedEmbeddings(List<TextSegment> segments, List<Embedding> embeddings) {
+    }
+
+    /**
+     * 序列化格式中的单个分块
+     */
+    private record CachedChunk(String text, Map<String, Object> metadata, float[] vector) {
+    }
+
+    /**
+     * 读取缓存的分块和向量
+     *
+     * 实现思路：
+     * 1. 根据内容哈希、嵌入模型和分块参数计算缓存对象路径
+     * 2. 对象不存在时返回空，由调用方重新解析和向量化
+     * 3. 解压并反序列化为 TextSegment 和 Embedding，读取失败时视为未命中
+     *
+     * @param contentHash        文件内容的 SHA-256，为空时不使用缓存
+     * @param embeddingModelName 嵌入模型名称
+     * @param chunkSize          分块大小
+     * @param chunkOverlap       分块重叠大小
+     * @return 缓存的分块和向量
+     */
+    public Optional<CachedEmbeddings> load(String contentHash, String embeddingModelName, int chunkSize, int chunkOverlap) {
+        if (contentHash == null) {
+            return Optional.empty();
+        }
+
+        String objectName = objectName(contentHash, embeddingModelName, chunkSize, chunkOverlap);
+        try {
+            Optional<InputStream> content = minioService.getFileContentIfExists(objectName);
+            if (content.isEmpty()) {
+                meterRegistry.counter("smartdoc.index.embedding.cache", "result", "miss").increment();
+                return Optional.empty();
+            }
+
+            List<CachedChunk> chunks;
+            try (InputStream inputStream = new GZIPInputStream(content.get())) {
+                chunks = objectMapper.readValue(inputStream, new TypeReference<List<CachedChunk>>() {
+                });
+            }
+
+            List<TextSegment> segments = new ArrayList<>(chunks.size());
+            List<Embedding> embeddings = new ArrayList<>(chunks.size());
+            for (CachedChunk chunk : chunks) {
+                segments.add(TextSegment.from(chunk.text(), Metadata.from(chunk.metadata())));
+                embeddings.add(Embedding.from(chunk.vector()));
+            }
+
+            meterRegistry.counter("smartdoc.index.embedding.cache", "result", "hit").increment();
+            log.info("命中分块向量缓存: {}, 片段数: {}", objectName, segments.size());
+            return Optional.of(new CachedEmbeddings(segments, embeddings));
+        } catch (Exception e) {
+            meterRegistry.counter("smartdoc.index.embedding.cache", "result", "error").increment();
+            log.warn("读取分块向量缓存失败: {}, {}", objectName, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 保存分块和向量到缓存，失败只记录日志，不影响索引构建
+     *
+     * @param contentHash        文件内容的 SHA-256，为空时不缓存
+     * @param embeddingModelName 嵌入模型名称
+     * @param chunkSize          分块大小
+     * @param chunkOverlap       分块重叠大小
+     * @param segments           分块
+     * @param embeddings         与分块一一对应的向量
+     */
+    public void save(String contentHash, String embeddingModelName, int chunkSize, int chunkOverlap,
+                     List<TextSegment> segments, List<Embedding> embeddings) {
+        if (contentHash == null) {
+            return;
+        }
+
+        String objectName = objectName(contentHash, embeddingModelName, chunkSize, chunkOverlap);
+        try {
+            List<CachedChunk> chunks = new ArrayList<>(segments.size());
+            for (int i = 0; i < segments.size(); i++) {
+                TextSegment segment = segments.get(i);
+                chunks.add(new CachedChunk(segment.text(), segment.metadata().toMap(), embeddings.get(i).vector()));
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                objectMapper.writeValue(gzip, chunks);
+            }
+            minioService.uploadBytes(objectName, bytes.toByteArray(), "application/gzip");
+            log.debug("保存分块向量缓存: {}, 大小: {} 字节", objectName, bytes.size());
+        } catch (Exception e) {
+            log.warn("保存分块向量缓存失败: {}, {}", objectName, e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存对象路径：derived/{内容哈希}/embeddings/{模型}-{分块大小}-{重叠大小}.json.gz
+     * 以内容哈希开头，存储对象被删除时可按前缀一并清理
+     */
+    private static String objectName(String contentHash, String embeddingModelName, int chunkSize, int chunkOverlap) {
+        String model = embeddingModelName.replaceAll("[^A-Za-z0-9._-]", "_");
+        return ContentStoreService.DERIVED_PREFIX + contentHash + "/embeddings/"
+                + model + "-" + chunkSize + "-" + chunkOverlap + ".json.gz";
+    }
+}
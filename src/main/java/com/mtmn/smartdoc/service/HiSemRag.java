@@ -4,6 +4,7 @@ import com.mtmn.smartdoc.common.CustomException;
 import com.mtmn.smartdoc.common.MyNode;
 import com.mtmn.smartdoc.po.DocumentPO;
 import com.mtmn.smartdoc.po.KnowledgeBase;
+import com.mtmn.smartdoc.utils.ContextPacker;
 import com.mtmn.smartdoc.utils.MarkdownProcessor;
 import com.mtmn.smartdoc.utils.SseUtil;
 import com.mtmn.smartdoc.utils.ThresholdCalculator;
@@ -24,7 +25,6 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.IntStream;
 
 import static com.mtmn.smartdoc.service.impl.KnowledgeBaseServiceImpl.getCurrentUserId;
 import static com.mtmn.smartdoc.service.impl.KnowledgeBaseServiceImpl.getStoreKnowledgeBaseName;
@@ -47,6 +47,14 @@ public class HiSemRag implements BaseRag {
     private final MinioService minioService;
     private final SseUtil sseUtil;
     private final MilvusService milvusService;
+    private final RerankService rerankService;
+    private final ContextPacker contextPacker;
+
+    /**
+     * 自适应阈值计算使用的分数数组和快速选择缓冲区，按线程复用，长度不足时扩容
+     */
+    private static final ThreadLocal<double[]> SCORE_BUFFER = ThreadLocal.withInitial(() -> new double[16]);
+    private static final ThreadLocal<double[]> SCRATCH_BUFFER = ThreadLocal.withInitial(() -> new double[16]);
 
     /**
      * 构建高级语义RAG索引
@@ -64,17 +72,17 @@ public class HiSemRag implements BaseRag {
      *    - 提取叶子节点，每个节点包含标题和内容
      *    - 将节点转换为TextSegment，包含元数据
      *    - 使用嵌入模型生成向量表示
-     *    - 将向量和文本段存储到Milvus中
+     *    - 删除该文档已有的向量后，将带文档ID的向量和文本段存储到Milvus中
      * 7. 异常处理：记录文档解析失败的详细信息
-     * 8. 返回每个文档的处理结果状态
+     * 8. 返回每个文档带文档ID的处理结果（片段数、耗时、失败原因）
      * 
      * @param kbName 知识库名称
      * @param documentPoList 文档列表
      * @param params 构建参数，包含chunk-size、abstract、embeddingModelName等
-     * @return 每个文档的处理成功状态列表
+     * @return 每个文档的处理结果
      */
     @Override
-    public List<Boolean> buildIndex(String kbName, List<DocumentPO> documentPoList, Map<String, Object> params) {
+    public List<IndexResult> buildIndex(String kbName, List<DocumentPO> documentPoList, Map<String, Object> params) {
         Integer chunkSize = (Integer) params.getOrDefault("chunk-size", 512);
         Boolean generateAbstract = (Boolean) params.getOrDefault("abstract", false);
         String embeddingModelName = (String) params.get("embeddingModelName");
@@ -88,7 +96,7 @@ public class HiSemRag implements BaseRag {
         EmbeddingModel embeddingModel = EmbeddingService.createEmbeddingModel(embeddingModelName);
         log.info("使用嵌入模型：{} 创建索引", embeddingModelName);
 
-        List<Boolean> success = new ArrayList<>();
+        List<IndexResult> results = new ArrayList<>(documentPoList.size());
 
         Long userId = getCurrentUserId();
         if (null == userId) {
@@ -101,8 +109,10 @@ public class HiSemRag implements BaseRag {
 
         for (DocumentPO documentPo : documentPoList) {
             String filePath = documentPo.getFilePath();
+            long startTime = System.nanoTime();
 
             try (InputStream inputStream = minioService.getFileContent(filePath)) {
+                int chunkCount = 0;
                 Map.Entry<MyNode, Map<String, MyNode>> streamResult =
                         MarkdownProcessor.processMarkdownFile(
                                 inputStream,
@@ -127,18 +137,18 @@ public class HiSemRag implements BaseRag {
 
                     List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
 
-                    embeddingStore.addAll(embeddings, segments);
+                    milvusService.replaceDocumentVectors(embeddingStore, documentPo.getId(), embeddings, segments);
+                    chunkCount = segments.size();
                 }
 
-                success.add(true);
-                continue;
+                results.add(IndexResult.success(documentPo.getId(), chunkCount, startTime));
             } catch (Exception e) {
                 log.error("解析文档失败: {}, 错误: {}", filePath, e.getMessage(), e);
+                results.add(IndexResult.failure(documentPo.getId(), e.getMessage(), true, startTime));
             }
-            success.add(false);
         }
 
-        return success;
+        return results;
     }
 
     /**
@@ -217,13 +227,13 @@ public class HiSemRag implements BaseRag {
      * 6. 使用ThresholdCalculator计算自适应阈值：
      *    - beta=1, gamma=0.7, kMin=1 (待从配置文件读取)
      *    - 根据分数分布动态调整阈值
-     * 7. 过滤低于阈值的结果，保留高质量匹配
+     * 7. 过滤低于阈值的结果，保留高质量匹配，并使用交叉编码器重排序
      * 8. 如果没有符合阈值的结果，返回未找到信息的提示
      * 9. 构建专门的RAG提示模板：
      *    - 避免输出检索相关的前缀
      *    - 支持Markdown格式和图片渲染
      *    - 处理无法回答的情况
-     * 10. 格式化检索到的内容片段为上下文
+     * 10. 去除近似重复片段，按模型 token 预算将检索到的内容片段组装为上下文
      * 11. 使用SSE流式输出处理聊天响应
      * 12. 异常处理：捕获并返回友好的错误信息
      * 
@@ -257,9 +267,11 @@ public class HiSemRag implements BaseRag {
 
             List<EmbeddingMatch<TextSegment>> matches = embeddingStore.search(embeddingSearchRequest).matches();
 
-            List<Double> scores = matches.stream().map(EmbeddingMatch::score).toList();
-
-            log.debug("相似度列表: {}", scores);
+            int matchCount = matches.size();
+            double[] scores = buffer(SCORE_BUFFER, matchCount);
+            for (int i = 0; i < matchCount; i++) {
+                scores[i] = matches.get(i).score();
+            }
 
             // 计算自适应阈值 - 使用配置文件中的参数值
             // TODO 解决硬编码，提取到配置文件中
@@ -267,11 +279,15 @@ public class HiSemRag implements BaseRag {
             double gamma = 0.7;
             int kMin = 1;
 
-            double threshold = ThresholdCalculator.calculateAdaptiveThreshold(scores, 1, maxRes, beta, gamma, kMin);
-            List<String> contents = matches.stream()
+            double threshold = ThresholdCalculator.calculateAdaptiveThreshold(scores, matchCount, 1, maxRes,
+                    beta, gamma, kMin, buffer(SCRATCH_BUFFER, matchCount));
+            List<String> candidates = matches.stream()
                     .filter(m -> m.score() >= threshold)
                     .map(em -> em.embedded().text()).toList();
 
+            // 使用交叉编码器对通过阈值的片段重排序
+            List<String> contents = rerankService.rerank(knowledgeBase, question, candidates);
+
             log.debug("[自适应阈值] 最大结果数量: {}, 最终数量: {}", maxRes, contents.size());
 
             if (contents.isEmpty()) {
@@ -303,17 +319,12 @@ public class HiSemRag implements BaseRag {
                     %s
                     ···""";
 
-            // 准备检索到的文档列表和提示词片段
-            StringBuilder contextBuilder = new StringBuilder();
-
-            // 使用IntStream处理文档片段
-            IntStream.range(0, contents.size()).forEach(i -> {
-                contextBuilder.append(String.format("【片段%d】\n%s\n\n", i + 1, contents.get(i)));
-            });
+            // 去除近似重复片段，并按当前模型的 token 预算组装上下文
+            ContextPacker.PackedContext packedContext = contextPacker.pack(contents);
 
-            String prompt = String.format(promptTemplate, contextBuilder, question);
+            String prompt = String.format(promptTemplate, question, packedContext.context());
 
-            return sseUtil.handleStreamingChatResponse(prompt, contents);
+            return sseUtil.handleStreamingChatResponse(prompt, packedContext.chunks());
         } catch (Exception e) {
             log.error("HisemRAG 问答处理失败", e);
             // 生成错误对象的新格式响应
@@ -322,4 +333,13 @@ public class HiSemRag implements BaseRag {
             return sseUtil.sendFluxMessage(escapedError);
         }
     }
-}
\ No newline at end of file
+
+    private static double[] buffer(ThreadLocal<double[]> holder, int length) {
+        double[] buffer = holder.get();
+        if (buffer.length < length) {
+            buffer = new double[length];
+            holder.set(buffer);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,232 @@
+package com.mtmn.smartdoc.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mtmn.smartdoc.config.RagStrategyFactory;
+import com.mtmn.smartdoc.po.DocumentPO;
+import com.mtmn.smartdoc.po.KnowledgeBase;
+import com.mtmn.smartdoc.repository.DocumentRepository;
+import com.mtmn.smartdoc.repository.KnowledgeBaseRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 知识库索引构建服务
+ * 调用 RAG 策略构建索引后，按文档ID汇总每个文档的结果，成功的文档用一条批量 UPDATE 标记为已索引，
+ * 可重试的失败文档在后台按指数退避重新构建；同一文档同一时间只允许一个构建任务
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/20 17:10
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class IndexBuildService {
+
+    private final KnowledgeBaseRepository knowledgeBaseRepository;
+    private final DocumentRepository documentRepository;
+    private final RagStrategyFactory ragStrategyFactory;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${knowledge-base.index-retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${knowledge-base.index-retry.initial-backoff:30s}")
+    private Duration initialBackoff;
+
+    private ScheduledExecutorService retryExecutor;
+
+    /**
+     * 正在构建索引的文档ID，用户重复触发构建或与后台重试并发时跳过这些文档
+     */
+    private final Set<Long> building = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 一次索引构建的汇总结果
+     *
+     * @param results 每个文档的构建结果
+     * @param updated 标记为已索引的文档数
+     * @param retried 提交后台重试的文档数
+     * @param skipped 其他任务正在构建、本次跳过的文档数
+     */
+    public record BuildSummary(List<IndexResult> results, int updated, int retried, int skipped) {
+
+        public long succeeded() {
+            return results.stream().filter(IndexResult::success).count();
+        }
+
+        public long failed() {
+            return results.size() - succeeded();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "index-retry-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        retryExecutor.shutdownNow();
+    }
+
+    /**
+     * 为知识库中的文档构建索引
+     *
+     * 实现思路：
+     * 1. 登记本次构建的文档，已有其他任务在构建的文档跳过，构建结束后释放
+     * 2. 解析知识库的索引参数，补充嵌入模型名称，获取对应的 RAG 策略构建索引；
+     *    RAG 策略写入前会按文档ID删除该文档已有的向量，重试不会产生重复片段
+     * 3. 成功的文档ID用一条 UPDATE ... WHERE id IN (...) 标记为已索引
+     * 4. 按结果记录每个文档的耗时和片段数指标，失败的文档记录原因
+     * 5. 可重试的失败文档提交到后台重试，重试任务携带当前的安全上下文
+     *
+     * @param knowledgeBase 知识库
+     * @param documents     待构建索引的文档
+     * @return 汇总结果
+     */
+    public BuildSummary build(KnowledgeBase knowledgeBase, List<DocumentPO> documents) {
+        return build(knowledgeBase, documents, 1);
+    }
+
+    private BuildSummary build(KnowledgeBase knowledgeBase, List<DocumentPO> documents, int attempt) {
+        List<DocumentPO> claimed = documents.stream()
+                .filter(doc -> building.add(doc.getId()))
+                .toList();
+        int skipped = documents.size() - claimed.size();
+        if (skipped > 0) {
+            log.info("{} 个文档正在构建索引，本次跳过，知识库ID：{}", skipped, knowledgeBase.getId());
+        }
+        if (claimed.isEmpty()) {
+            return new BuildSummary(List.of(), 0, 0, skipped);
+        }
+        try {
+            return build(knowledgeBase, claimed, attempt, skipped);
+        } finally {
+            claimed.forEach(doc -> building.remove(doc.getId()));
+        }
+    }
+
+    private BuildSummary build(KnowledgeBase knowledgeBase, List<DocumentPO> documents, int attempt, int skipped) {
+        BaseRag rag = ragStrategyFactory.getStrategy(knowledgeBase.getRag());
+        List<IndexResult> results = rag.buildIndex(knowledgeBase.getName(), documents, indexParams(knowledgeBase));
+
+        List<Long> succeededIds = results.stream()
+                .filter(IndexResult::success)
+                .map(IndexResult::documentId)
+                .toList();
+        Integer updated = succeededIds.isEmpty() ? Integer.valueOf(0) : transactionTemplate.execute(status ->
+                documentRepository.markIndexed(succeededIds, LocalDateTime.now()));
+
+        for (IndexResult result : results) {
+            String outcome = result.success() ? "success" : "failed";
+            meterRegistry.timer("smartdoc.index.document", "rag", rag.getMethodName(), "outcome", outcome)
+                    .record(result.elapsedMs(), TimeUnit.MILLISECONDS);
+            if (result.success()) {
+                meterRegistry.summary("smartdoc.index.chunks", "rag", rag.getMethodName()).record(result.chunkCount());
+            } else {
+                log.warn("文档索引构建失败，知识库ID：{}，文档ID：{}，尝试次数：{}，可重试：{}，原因：{}",
+                        knowledgeBase.getId(), result.documentId(), attempt, result.retryable(), result.error());
+            }
+        }
+
+        List<Long> retryIds = results.stream()
+                .filter(result -> !result.success() && result.retryable())
+                .map(IndexResult::documentId)
+                .toList();
+        if (!retryIds.isEmpty()) {
+            scheduleRetry(knowledgeBase.getId(), retryIds, attempt);
+        }
+
+        return new BuildSummary(results, updated == null ? 0 : updated, retryIds.size(), skipped);
+    }
+
+    /**
+     * 延迟 initialBackoff * 2^(attempt-1) 后重新构建失败的文档，达到最大次数后放弃
+     */
+    private void scheduleRetry(Long knowledgeBaseId, List<Long> documentIds, int attempt) {
+        if (attempt >= maxAttempts) {
+            meterRegistry.counter("smartdoc.index.retry", "outcome", "exhausted").increment(documentIds.size());
+            log.error("文档索引构建重试已达上限，已放弃，知识库ID：{}，文档ID：{}，尝试次数：{}",
+                    knowledgeBaseId, documentIds, attempt);
+            return;
+        }
+        long delay = initialBackoff.toMillis() << (attempt - 1);
+        meterRegistry.counter("smartdoc.index.retry", "outcome", "scheduled").increment(documentIds.size());
+        log.info("{} ms 后重试文档索引构建，知识库ID：{}，文档ID：{}", delay, knowledgeBaseId, documentIds);
+        // RAG 策略从安全上下文获取用户ID确定向量集合，重试线程需要沿用提交时的上下文
+        Runnable task = new DelegatingSecurityContextRunnable(() -> retry(knowledgeBaseId, documentIds, attempt + 1));
+        retryExecutor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 重新加载知识库和文档后再构建，跳过期间已被删除、移出知识库或已完成索引的文档
+     */
+    private void retry(Long knowledgeBaseId, List<Long> documentIds, int attempt) {
+        try {
+            Optional<KnowledgeBase> knowledgeBase = knowledgeBaseRepository.findById(knowledgeBaseId);
+            if (knowledgeBase.isEmpty()) {
+                log.info("知识库已删除，取消索引重试，知识库ID：{}", knowledgeBaseId);
+                return;
+            }
+            List<DocumentPO> documents = documentRepository.findAllById(documentIds).stream()
+                    .filter(doc -> knowledgeBaseId.equals(doc.getKnowledgeBaseId()))
+                    .filter(doc -> !Boolean.TRUE.equals(doc.getIndexed()))
+                    .toList();
+            if (documents.isEmpty()) {
+                return;
+            }
+            BuildSummary summary = build(knowledgeBase.get(), documents, attempt);
+            meterRegistry.counter("smartdoc.index.retry", "outcome", "success").increment(summary.succeeded());
+            log.info("文档索引构建重试完成，知识库ID：{}，尝试次数：{}，成功：{}，失败：{}",
+                    knowledgeBaseId, attempt, summary.succeeded(), summary.failed());
+        } catch (Exception e) {
+            log.error("文档索引构建重试失败，知识库ID：{}，尝试次数：{}", knowledgeBaseId, attempt, e);
+            scheduleRetry(knowledgeBaseId, documentIds, attempt);
+        }
+    }
+
+    private Map<String, Object> indexParams(KnowledgeBase knowledgeBase) {
+        Map<String, Object> params = new HashMap<>();
+        String indexParam = knowledgeBase.getIndexParam();
+        if (StringUtils.hasText(indexParam)) {
+            try {
+                params.putAll(objectMapper.readValue(indexParam, new TypeReference<Map<String, Object>>() {
+                }));
+            } catch (Exception e) {
+                log.error("解析索引参数JSON失败", e);
+            }
+        }
+        params.put("embeddingModelName", knowledgeBase.getEmbeddingModel());
+        return params;
+    }
+}
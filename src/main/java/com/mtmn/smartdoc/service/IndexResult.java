@@ -0,0 +1,46 @@
+package com.mtmn.smartdoc.service;
+
+/**
+ * 单个文档的索引构建结果
+ * 以文档ID标识结果，不依赖结果列表与输入文档列表的顺序一致
+ *
+ * @param documentId 文档ID
+ * @param success    是否成功
+ * @param chunkCount 写入向量库的片段数
+ * @param elapsedMs  该文档的处理耗时（毫秒）
+ * @param error      失败原因，成功时为空
+ * @param retryable  失败后是否值得重试；文档内容为空等确定性失败重试也不会成功
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/20 16:40
+ */
+public record IndexResult(Long documentId, boolean success, int chunkCount, long elapsedMs,
+                          String error, boolean retryable) {
+
+    /**
+     * 构建成功
+     *
+     * @param documentId 文档ID
+     * @param chunkCount 写入的片段数
+     * @param startNanos 开始处理时的 System.nanoTime()
+     */
+    public static IndexResult success(Long documentId, int chunkCount, long startNanos) {
+        return new IndexResult(documentId, true, chunkCount, elapsedMs(startNanos), null, false);
+    }
+
+    /**
+     * 构建失败
+     *
+     * @param documentId 文档ID
+     * @param error      失败原因
+     * @param retryable  是否可以重试
+     * @param startNanos 开始处理时的 System.nanoTime()
+     */
+    public static IndexResult failure(Long documentId, String error, boolean retryable, long startNanos) {
+        return new IndexResult(documentId, false, 0, elapsedMs(startNanos), error, retryable);
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -1,19 +1,32 @@
 package com.mtmn.smartdoc.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.mtmn.smartdoc.po.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -23,8 +36,11 @@ import java.util.function.Function;
  * @author charmingdaidai
  */
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${application.security.jwt.secret-key}")
     private String secretKey;
 
@@ -34,6 +50,64 @@ public class JwtService {
     @Value("${application.security.jwt.refresh-token.expiration}")
     private long refreshExpiration;
 
+    @Value("${application.security.jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    /**
+     * 签名密钥，启动时解码一次
+     */
+    private Key signInKey;
+
+    /**
+     * 令牌解析器，构建后不可变且线程安全，所有请求共享
+     */
+    private JwtParser jwtParser;
+
+    /**
+     * 令牌摘要到已验证声明的缓存，条目在令牌过期时失效
+     */
+    private Cache<String, Claims> claimsCache;
+
+    /**
+     * 初始化签名密钥、解析器和声明缓存
+     * 
+     * 实现思路：
+     * 1. 解码配置的密钥并构建HMAC密钥，之后签发和验证都复用同一个密钥对象
+     * 2. 用该密钥构建一次解析器，避免每次解析都重新构建
+     * 3. 创建有容量上限的声明缓存，以令牌的SHA-256摘要为键，不在内存中保存原始令牌
+     * 4. 每个条目的存活时间为令牌剩余的有效期，过期令牌不会从缓存中命中
+     */
+    @PostConstruct
+    public void init() {
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        jwtParser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+        claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        long remainingMillis = expiration == null
+                                ? refreshExpiration
+                                : expiration.getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, claimsCache, "jwt.claims");
+    }
+
     /**
      * 从JWT令牌中提取用户名
      * 
@@ -49,6 +123,21 @@ public class JwtService {
         return extractClaim(token, Claims::getSubject);
     }
 
+    /**
+     * 验证JWT令牌并返回其中的全部声明
+     * 
+     * 实现思路：
+     * 1. 委托给extractAllClaims，验证签名和过期时间，验证结果有缓存
+     * 2. 调用方从一次验证的结果中读取用户名、用户ID等声明，不需要重复解析
+     * 
+     * @param token JWT令牌字符串
+     * @return 已验证的声明（缓存声明的副本）
+     * @throws io.jsonwebtoken.JwtException 令牌无效或已过期时
+     */
+    public Claims verifyToken(String token) {
+        return extractAllClaims(token);
+    }
+
     /**
      * 从JWT令牌中提取特定声明
      * 
@@ -216,38 +305,48 @@ public class JwtService {
      * 从JWT令牌中提取所有声明信息
      * 
      * 实现思路：
-     * 1. 使用JJWT库的解析器构建器
-     * 2. 设置签名验证密钥以确保令牌完整性
-     * 3. 解析JWT字符串并验证签名
-     * 4. 返回包含所有声明的Claims对象
-     * 5. 如果签名验证失败或令牌格式错误会抛出异常
+     * 1. 以令牌的SHA-256摘要查询声明缓存，命中且未过期时直接返回，不再验证签名
+     * 2. 未命中时使用共享的解析器解析JWT字符串并验证签名，验证通过的声明放入缓存
+     * 3. 缓存条目按令牌过期时间失效；到期时刻恰好命中的条目再次检查过期时间，过期时重新解析以抛出过期异常
+     * 4. 如果签名验证失败或令牌格式错误会抛出异常，失败的结果不会被缓存
+     * 5. Claims 是可修改的 Map，返回缓存声明的副本，调用方的修改不会影响同一令牌后续的验证结果
      * 
      * @param token JWT令牌字符串
-     * @return 包含所有声明的Claims对象
+     * @return 包含所有声明的Claims对象（每次调用返回新的副本）
      */
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        String key = digest(token);
+        Claims claims = claimsCache.get(key, k -> jwtParser.parseClaimsJws(token).getBody());
+        Date expiration = claims.getExpiration();
+        if (expiration != null && expiration.before(new Date())) {
+            claimsCache.invalidate(key);
+            return jwtParser.parseClaimsJws(token).getBody();
+        }
+        return Jwts.claims(claims);
+    }
+
+    /**
+     * 计算令牌的SHA-256摘要，作为缓存键
+     */
+    private static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
      * 获取JWT签名密钥
      * 
      * 实现思路：
-     * 1. 使用Base64解码器解码配置的密钥字符串
-     * 2. 将解码后的字节数组转换为HMAC密钥
-     * 3. 使用Keys.hmacShaKeyFor确保密钥格式正确
-     * 4. 返回用于JWT签名和验证的Key对象
-     * 5. 确保密钥的安全性和一致性
+     * 1. 返回启动时由配置的Base64密钥构建的HMAC密钥
+     * 2. 签发和验证共用同一个Key对象，不再每次调用都解码
      * 
      * @return JWT签名和验证使用的密钥对象
      */
     private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signInKey;
     }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package com.mtmn.smartdoc.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 知识库删除后的后台清理服务
+ * 数据库记录删除后，在后台删除 MinIO 中已无引用的文件和 Milvus 中的向量集合，
+ * 每个步骤独立执行，失败后按指数退避重试
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/18 10:30
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class KnowledgeBaseCleanupService {
+
+    private final MinioService minioService;
+    private final ContentStoreService contentStoreService;
+    private final MilvusService milvusService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${knowledge-base.cleanup.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${knowledge-base.cleanup.initial-backoff:2s}")
+    private Duration initialBackoff;
+
+    private ScheduledExecutorService cleanupExecutor;
+
+    /**
+     * 清理任务
+     *
+     * @param knowledgeBaseId 已删除的知识库ID
+     * @param collectionName  知识库的向量集合名称
+     * @param objectNames     需要删除的 MinIO 对象
+     * @param prefixes        需要一并清理的解析文本前缀
+     * @param contentHashes   需要清理派生对象的内容哈希，删除前确认相同内容没有被重新登记
+     */
+    public record CleanupTask(Long knowledgeBaseId, String collectionName,
+                              List<String> objectNames, List<String> prefixes, List<String> contentHashes) {
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        cleanupExecutor = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "kb-cleanup-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanupExecutor.shutdownNow();
+    }
+
+    /**
+     * 在当前事务提交后提交清理任务
+     *
+     * 实现思路：
+     * 1. 存在事务时注册提交后回调，事务回滚时不会删除仍被引用的文件和集合
+     * 2. 没有事务时立即提交
+     * 3. MinIO 对象、派生对象和向量集合的删除作为独立步骤提交到后台线程，互不阻塞
+     *
+     * @param task 清理任务
+     */
+    public void submitAfterCommit(CleanupTask task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(task);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(task);
+            }
+        });
+    }
+
+    private void submit(CleanupTask task) {
+        Long knowledgeBaseId = task.knowledgeBaseId();
+        log.info("提交知识库清理任务，ID：{}，对象数：{}，集合：{}", knowledgeBaseId,
+                task.objectNames().size(), task.collectionName());
+        cleanupExecutor.execute(() -> execute("objects", knowledgeBaseId,
+                () -> minioService.deleteFiles(task.objectNames()), 1));
+        // 派生对象（解析文本、向量缓存）可以重新生成，清理失败只记录日志
+        cleanupExecutor.execute(() -> {
+            task.prefixes().forEach(minioService::deleteByPrefix);
+            task.contentHashes().forEach(contentStoreService::deleteDerived);
+        });
+        cleanupExecutor.execute(() -> execute("collection", knowledgeBaseId,
+                () -> milvusService.dropCollection(task.collectionName()), 1));
+    }
+
+    /**
+     * 执行一个清理步骤，失败时按 initialBackoff * 2^(attempt-1) 延迟重试，达到最大次数后放弃
+     */
+    private void execute(String step, Long knowledgeBaseId, Runnable action, int attempt) {
+        try {
+            action.run();
+            meterRegistry.counter("smartdoc.kb.cleanup", "step", step, "outcome", "success").increment();
+            log.info("知识库清理步骤完成，ID：{}，步骤：{}，尝试次数：{}", knowledgeBaseId, step, attempt);
+        } catch (Exception e) {
+            if (attempt >= maxAttempts) {
+                meterRegistry.counter("smartdoc.kb.cleanup", "step", step, "outcome", "failed").increment();
+                log.error("知识库清理步骤失败，已放弃，ID：{}，步骤：{}，尝试次数：{}", knowledgeBaseId, step, attempt, e);
+                return;
+            }
+            long delay = initialBackoff.toMillis() << (attempt - 1);
+            meterRegistry.counter("smartdoc.kb.cleanup", "step", step, "outcome", "retry").increment();
+            log.warn("知识库清理步骤失败，{} ms 后重试，ID：{}，步骤：{}，原因：{}", delay, knowledgeBaseId, step, e.getMessage());
+            cleanupExecutor.schedule(() -> execute(step, knowledgeBaseId, action, attempt + 1),
+                    delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
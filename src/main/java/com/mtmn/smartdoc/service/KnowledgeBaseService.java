@@ -4,7 +4,9 @@ import com.mtmn.smartdoc.common.ApiResponse;
 import com.mtmn.smartdoc.dto.CreateKbRequest;
 import com.mtmn.smartdoc.dto.KnowledgeBaseDTO;
 import com.mtmn.smartdoc.po.User;
+import com.mtmn.smartdoc.vo.CursorPage;
 import com.mtmn.smartdoc.vo.DocumentVO;
+import com.mtmn.smartdoc.vo.UploadFileResult;
 import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
 
@@ -71,6 +73,16 @@ public interface KnowledgeBaseService {
      */
     ApiResponse<List<DocumentVO>> listKnowledgeBaseDocs(Long knowledgeBaseId, User user);
 
+    /**
+     * 键集分页获取知识库文档列表
+     * @param knowledgeBaseId 知识库ID
+     * @param user 当前用户
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页条数
+     * @return 一页文档
+     */
+    ApiResponse<CursorPage<DocumentVO>> listKnowledgeBaseDocsPage(Long knowledgeBaseId, User user, String cursor, int size);
+
     /**
      * 向知识库添加文档
      * 
@@ -78,9 +90,9 @@ public interface KnowledgeBaseService {
      * @param user 当前用户
      * @param files 文档文件数组
      * @param titles 文档标题数组
-     * @return 添加结果列表
+     * @return 每个文件的上传结果列表
      */
-    ApiResponse<List<Boolean>> addDocs(Long id, User user, MultipartFile[] files, String[] titles);
+    ApiResponse<List<UploadFileResult>> addDocs(Long id, User user, MultipartFile[] files, String[] titles);
 
     /**
      * 构建知识库索引
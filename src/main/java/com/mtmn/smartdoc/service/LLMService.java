@@ -2,6 +2,8 @@ package com.mtmn.smartdoc.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mtmn.smartdoc.common.CancellableHttpClientBuilder;
+import com.mtmn.smartdoc.common.StreamCancellation;
 import com.mtmn.smartdoc.config.ModelConfig;
 import com.mtmn.smartdoc.vo.SecurityResult;
 import dev.langchain4j.model.chat.ChatModel;
@@ -116,6 +118,22 @@ public class LLMService {
      * @return 对应的流式聊天语言模型实例
      */
     public OpenAiStreamingChatModel createStreamingChatModel(String modelId){
+        return createStreamingChatModel(modelId, null);
+    }
+
+    /**
+     * 创建可取消的流式聊天语言模型
+     * 
+     * 实现思路：
+     * 1. 与createStreamingChatModel(String modelId)相同的方式解析模型配置
+     * 2. 如果传入取消句柄，则使用CancellableHttpClientBuilder包装默认HTTP客户端
+     * 3. 句柄被取消时会关闭HTTP响应体，上游模型随之停止生成
+     * 
+     * @param modelId 模型ID，如果为null则使用当前激活的模型
+     * @param cancellation 取消句柄，为null时与普通流式模型一致
+     * @return 对应的流式聊天语言模型实例
+     */
+    public OpenAiStreamingChatModel createStreamingChatModel(String modelId, StreamCancellation cancellation) {
         // 如果未指定modelId，使用当前激活的模型
         String targetModelId = modelId == null ?
                 modelConfig.getActiveLlm() :
@@ -131,13 +149,18 @@ public class LLMService {
         log.info("创建流式聊天语言模型: {}", config.getModelName());
 
         // 构建并返回流式模型
-        return OpenAiStreamingChatModel.builder()
+        var builder = OpenAiStreamingChatModel.builder()
                 .apiKey(config.getApiKey())
                 .baseUrl(config.getBaseUrl())
                 .modelName(config.getModelName())
 //                .maxTokens(20000)
-                .maxCompletionTokens(32000)
-                .build();
+                .maxCompletionTokens(32000);
+
+        if (cancellation != null) {
+            builder.httpClientBuilder(new CancellableHttpClientBuilder(cancellation));
+        }
+
+        return builder.build();
     }
 
     /**
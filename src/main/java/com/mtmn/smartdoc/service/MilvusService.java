@@ -1,12 +1,24 @@
 package com.mtmn.smartdoc.service;
 
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
 import io.milvus.common.clientenum.ConsistencyLevelEnum;
 import io.milvus.param.IndexType;
 import io.milvus.param.MetricType;
+import io.milvus.v2.client.ConnectConfig;
+import io.milvus.v2.client.MilvusClientV2;
+import io.milvus.v2.service.collection.request.DropCollectionReq;
+import io.milvus.v2.service.collection.request.HasCollectionReq;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
 /**
  * Milvus向量数据库服务
  * 负责创建和管理Milvus嵌入存储
@@ -15,15 +27,24 @@ import org.springframework.stereotype.Service;
  * @version 1.0
  * @date 2025/5/9 10:17
  */
+@Log4j2
 @Service
 public class MilvusService {
 
+    /**
+     * 向量元数据中记录所属文档ID的键
+     */
+    public static final String DOCUMENT_ID_KEY = "document_id";
+
     @Value("${milvus.host}")
     String host;
 
     @Value("${milvus.port}")
     Integer port;
 
+    @Value("${milvus.uri}")
+    String uri;
+
     /**
      * 获取Milvus嵌入存储实例
      * 
@@ -64,4 +85,57 @@ public class MilvusService {
                 .build();
     }
 
-}
\ No newline at end of file
+    /**
+     * 删除集合
+     * 
+     * 实现思路：
+     * 1. 建立一次性的Milvus客户端连接，用完即关闭，避免连接泄漏
+     * 2. 集合不存在时直接返回，重复调用是幂等的，失败后可以安全重试
+     * 3. 集合存在时调用dropCollection删除集合及其中的全部向量
+     * 
+     * @param collectionName 集合名称
+     */
+    public void dropCollection(String collectionName) {
+        MilvusClientV2 milvusClient = new MilvusClientV2(ConnectConfig.builder().uri(uri).build());
+        try {
+            Boolean exists = milvusClient.hasCollection(HasCollectionReq.builder().collectionName(collectionName).build());
+            if (!Boolean.TRUE.equals(exists)) {
+                log.info("集合不存在，跳过删除: {}", collectionName);
+                return;
+            }
+            milvusClient.dropCollection(DropCollectionReq.builder().collectionName(collectionName).build());
+            log.info("删除集合: {}", collectionName);
+        } finally {
+            try {
+                milvusClient.close(5);
+            } catch (Exception e) {
+                log.debug("关闭 Milvus 连接失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写入文档的向量，替换该文档已有的向量
+     *
+     * 实现思路：
+     * 1. 按元数据中的文档ID删除该文档已写入的向量，包括上次构建中途失败留下的部分向量
+     * 2. 复制每个片段的元数据并写入文档ID，不修改调用方的片段（缓存中的片段可能被多个文档共享）
+     * 3. 写入新的向量，重试或重复构建同一文档不会产生重复片段
+     *
+     * @param embeddingStore 知识库的向量存储
+     * @param documentId     文档ID
+     * @param embeddings     片段的向量
+     * @param segments       文本片段，与向量一一对应
+     */
+    public void replaceDocumentVectors(EmbeddingStore<TextSegment> embeddingStore, long documentId,
+                                       List<Embedding> embeddings, List<TextSegment> segments) {
+        embeddingStore.removeAll(metadataKey(DOCUMENT_ID_KEY).isEqualTo(documentId));
+        if (segments.isEmpty()) {
+            return;
+        }
+        List<TextSegment> tagged = segments.stream()
+                .map(segment -> TextSegment.from(segment.text(), segment.metadata().copy().put(DOCUMENT_ID_KEY, documentId)))
+                .toList();
+        embeddingStore.addAll(embeddings, tagged);
+    }
+}
@@ -1,21 +1,58 @@
 package com.mtmn.smartdoc.service;
 
 import com.mtmn.smartdoc.common.CustomException;
+import com.mtmn.smartdoc.common.LocalFileCache;
+import com.mtmn.smartdoc.config.FileCacheConfig;
+import com.mtmn.smartdoc.vo.StreamUploadResult;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * MinIO对象存储服务
@@ -28,11 +65,105 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class MinioService {
 
+    /**
+     * S3 规定除最后一个分片外，每个分片不能小于 5MB
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    /**
+     * 从 MinIO 转发内容时使用的缓冲区大小
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     private final MinioClient minioClient;
+    private final MeterRegistry meterRegistry;
+    private final FileCacheConfig fileCacheConfig;
 
     @Value("${minio.bucket.files}")
     private String bucketName;
 
+    @Value("${minio.upload.part-size:16MB}")
+    private DataSize partSize;
+
+    @Value("${minio.upload.parallelism:4}")
+    private int uploadParallelism;
+
+    @Value("${minio.upload.max-size:200MB}")
+    private DataSize maxUploadSize;
+
+    private ExecutorService uploadExecutor;
+
+    /**
+     * 本地磁盘缓存，未启用时为null
+     */
+    private LocalFileCache fileCache;
+
+    /**
+     * 正在写入本地缓存的对象，同一对象的并发未命中只下载一次，其他调用方等待同一次填充的结果
+     */
+    private final Map<String, CompletableFuture<Optional<LocalFileCache.Entry>>> cacheFills = new ConcurrentHashMap<>();
+
+    /**
+     * 存储桶是否已确认存在，确认后上传不再逐个文件检查
+     */
+    private volatile boolean bucketReady;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        uploadExecutor = Executors.newFixedThreadPool(Math.max(1, uploadParallelism), r -> {
+            Thread thread = new Thread(r, "minio-upload-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (fileCacheConfig.isEnabled()) {
+            initFileCache();
+        }
+
+        // 启动时检查一次存储桶，MinIO 暂不可用时不影响启动，首次上传时再重试
+        try {
+            initBucket();
+        } catch (CustomException e) {
+            log.warn("启动时检查存储桶失败，将在首次上传时重试");
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        uploadExecutor.shutdownNow();
+    }
+
+    /**
+     * 初始化本地磁盘缓存并注册缓存指标
+     */
+    private void initFileCache() {
+        Path directory = Paths.get(fileCacheConfig.getDirectory());
+        try {
+            fileCache = new LocalFileCache(directory, fileCacheConfig.getMaxSize().toBytes());
+        } catch (Exception e) {
+            // 缓存目录不可用时退化为直接读取 MinIO
+            log.warn("初始化本地文件缓存失败，不使用缓存: {}", e.getMessage());
+            return;
+        }
+        meterRegistry.gauge("smartdoc.minio.cache.hit.ratio", fileCache, LocalFileCache::getHitRatio);
+        meterRegistry.gauge("smartdoc.minio.cache.size", fileCache, LocalFileCache::getTotalBytes);
+        meterRegistry.gauge("smartdoc.minio.cache.entries", fileCache, LocalFileCache::getEntryCount);
+        FunctionCounter.builder("smartdoc.minio.cache.evictions", fileCache, LocalFileCache::getEvictions)
+                .register(meterRegistry);
+        log.info("本地文件缓存目录: {}, 容量上限: {}", directory, fileCacheConfig.getMaxSize());
+    }
+
+    /**
+     * 对象元信息
+     *
+     * @param size        对象大小（字节）
+     * @param etag        对象ETag，内容变化时改变
+     * @param contentType 内容类型
+     */
+    public record ObjectInfo(long size, String etag, String contentType) {
+    }
+
     /**
      * 初始化MinIO存储桶
      * 
@@ -41,7 +172,7 @@ public class MinioService {
      * 2. 如果存储桶不存在，则创建新的存储桶
      * 3. 记录存储桶创建的成功日志
      * 4. 异常处理：捕获并转换为自定义异常
-     * 5. 确保后续文件操作有可用的存储空间
+     * 5. 确保后续文件操作有可用的存储空间，成功后记录状态，后续上传不再重复检查
      */
     public void initBucket() {
         try {
@@ -50,17 +181,27 @@ public class MinioService {
                 minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
                 log.info("Created bucket: {}", bucketName);
             }
+            bucketReady = true;
         } catch (Exception e) {
             log.error("初始化存储桶失败: {}", e.getMessage(), e);
             throw new CustomException(500, "初始化存储桶失败");
         }
     }
 
+    /**
+     * 存储桶尚未确认存在时才检查，避免每次上传都请求一次 bucketExists
+     */
+    private void ensureBucket() {
+        if (!bucketReady) {
+            initBucket();
+        }
+    }
+
     /**
      * 上传文件到MinIO存储
      * 
      * 实现思路：
-     * 1. 确保存储桶已初始化，如未存在则创建
+     * 1. 确保存储桶已初始化（启动时已检查，通常不会再发起请求）
      * 2. 使用getFilePath生成唯一的文件存储路径
      * 3. 构建PutObjectArgs对象，配置上传参数：
      *    - 指定存储桶名称
@@ -79,7 +220,7 @@ public class MinioService {
      */
     public String uploadFile(MultipartFile file, String originalFilename) {
         try {
-            initBucket();
+            ensureBucket();
 
             String objectName = getFilePath(originalFilename);
 
@@ -101,6 +242,275 @@ public class MinioService {
         }
     }
 
+    /**
+     * 流式上传文件到MinIO存储
+     * 
+     * 实现思路：
+     * 1. 直接从请求输入流按分片大小读取数据，不经过 MultipartFile 的磁盘/内存缓冲
+     * 2. 读取的同时计算 SHA-256，读到的字节数超过上限时中止上传
+     * 3. 只有一个分片时直接 putObject 到目标路径
+     * 4. 多个分片时并行上传为临时对象，同时在途的分片数不超过并行度，内存占用约为 (并行度 + 1) * 分片大小
+     * 5. 所有分片上传完成后由 MinIO 服务端 composeObject 合并为目标对象，数据不再经过应用
+     * 6. 任一分片上传失败后立即停止读取请求体；清理前等待所有在途分片结束，
+     *    避免分片在删除之后才写入成为孤儿对象
+     * 7. 无论成功失败都删除临时分片，并记录上传吞吐量
+     * 
+     * 注：MinioClient 的低层分片上传接口（createMultipartUpload/uploadPart）不是公开 API，
+     * 这里使用公开的 composeObject 在服务端完成合并，效果等同于分片上传
+     * 
+     * @param inputStream 请求体输入流，由调用方负责关闭
+     * @param originalFilename 原始文件名
+     * @param contentType 内容类型
+     * @return 上传结果，包含对象路径、大小、SHA-256 和吞吐量
+     * @throws CustomException 文件上传失败或超过大小上限时
+     */
+    public StreamUploadResult uploadStream(InputStream inputStream, String originalFilename, String contentType) {
+        ensureBucket();
+
+        String objectType = contentType != null ? contentType : "application/octet-stream";
+        String objectName = getFilePath(originalFilename);
+        String partPrefix = "tmp/uploads/" + UUID.randomUUID() + "/part-";
+        int partBytes = (int) Math.max(MIN_PART_SIZE, partSize.toBytes());
+        long startTime = System.nanoTime();
+
+        List<String> partNames = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        AtomicReference<Throwable> partFailure = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(Math.max(1, uploadParallelism));
+        long totalBytes = 0;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            while (true) {
+                throwIfFailed(partFailure);
+                byte[] part = inputStream.readNBytes(partBytes);
+                if (part.length == 0 && !partNames.isEmpty()) {
+                    break;
+                }
+                totalBytes += part.length;
+                if (totalBytes > maxUploadSize.toBytes()) {
+                    throw new CustomException(413, "文件大小超过上限 " + maxUploadSize.toMegabytes() + "MB");
+                }
+                digest.update(part);
+
+                // 第一个分片就已读完，直接上传到目标路径
+                if (partNames.isEmpty() && part.length < partBytes) {
+                    putBytes(objectName, part, objectType);
+                    partNames.add(objectName);
+                    break;
+                }
+
+                String partName = partPrefix + String.format("%05d", partNames.size() + 1);
+                inFlight.acquire();
+                // 等待名额期间可能已有分片失败，不再继续读取和上传
+                throwIfFailed(partFailure);
+                partNames.add(partName);
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        putBytes(partName, part, "application/octet-stream");
+                    } catch (Exception e) {
+                        partFailure.compareAndSet(null, e);
+                        throw new CompletionException(e);
+                    } finally {
+                        inFlight.release();
+                    }
+                }, uploadExecutor));
+
+                if (part.length < partBytes) {
+                    break;
+                }
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            throwIfFailed(partFailure);
+
+            if (!futures.isEmpty()) {
+                List<ComposeSource> sources = partNames.stream()
+                        .map(name -> ComposeSource.builder().bucket(bucketName).object(name).build())
+                        .toList();
+                minioClient.composeObject(
+                        ComposeObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .sources(sources)
+                                .headers(Map.of("Content-Type", objectType))
+                                .build()
+                );
+            }
+
+            long elapsedNanos = System.nanoTime() - startTime;
+            double throughput = totalBytes / 1024.0 / 1024.0 / Math.max(elapsedNanos / 1e9, 1e-9);
+            meterRegistry.summary("smartdoc.minio.upload.throughput.mbps").record(throughput);
+            meterRegistry.counter("smartdoc.minio.upload.bytes").increment(totalBytes);
+            log.info("文件流式上传成功: {}, 大小: {} 字节, 分片数: {}, 耗时: {} ms, 吞吐量: {} MB/s",
+                    objectName, totalBytes, partNames.size(), elapsedNanos / 1_000_000,
+                    String.format("%.2f", throughput));
+
+            return StreamUploadResult.builder()
+                    .fileName(originalFilename)
+                    .objectName(objectName)
+                    .size(totalBytes)
+                    .sha256(HexFormat.of().formatHex(digest.digest()))
+                    .partCount(partNames.size())
+                    .elapsedMs(elapsedNanos / 1_000_000)
+                    .throughputMbPerSecond(throughput)
+                    .build();
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = partFailure.get() != null ? partFailure.get() : e;
+            log.error("文件流式上传失败: {}", cause.getMessage(), cause);
+            throw new CustomException(500, "文件流式上传到 MinIO 失败");
+        } finally {
+            if (!futures.isEmpty()) {
+                // 等待在途分片全部结束（无论成败）后再删除，已写入的分片才能被一并清理
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                        .handle((ignored, e) -> null)
+                        .join();
+                removeObjects(partNames);
+            }
+        }
+    }
+
+    private static void throwIfFailed(AtomicReference<Throwable> partFailure) throws IOException {
+        Throwable failure = partFailure.get();
+        if (failure != null) {
+            throw new IOException("分片上传失败: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * 上传内存中的字节数组到指定路径
+     * 用于保存解析文本、向量等由原始文件派生出的小对象
+     *
+     * @param objectName 对象路径
+     * @param bytes 对象内容
+     * @param contentType 内容类型
+     * @throws CustomException 上传失败时
+     */
+    public void uploadBytes(String objectName, byte[] bytes, String contentType) {
+        try {
+            putBytes(objectName, bytes, contentType);
+        } catch (Exception e) {
+            log.error("上传对象失败: {}, {}", objectName, e.getMessage(), e);
+            throw new CustomException(500, "上传对象到 MinIO 失败");
+        }
+    }
+
+    /**
+     * 上传本地文件到指定路径
+     *
+     * @param objectName 对象路径
+     * @param file 本地文件
+     * @param contentType 内容类型
+     * @throws CustomException 上传失败时
+     */
+    public void uploadLocalFile(String objectName, Path file, String contentType) {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            ensureBucket();
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .stream(inputStream, Files.size(file), -1)
+                            .contentType(contentType)
+                            .build()
+            );
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("上传对象失败: {}, {}", objectName, e.getMessage(), e);
+            throw new CustomException(500, "上传对象到 MinIO 失败");
+        }
+    }
+
+    /**
+     * 上传内存中的字节数组
+     */
+    private void putBytes(String objectName, byte[] bytes, String contentType) throws Exception {
+        minioClient.putObject(
+                PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .stream(new ByteArrayInputStream(bytes), bytes.length, -1)
+                        .contentType(contentType)
+                        .build()
+        );
+    }
+
+    /**
+     * 批量删除对象
+     * 
+     * 实现思路：
+     * 1. 先失效这些对象的本地缓存
+     * 2. 通过removeObjects批量删除，SDK按每批最多1000个对象分批发起请求，对象不存在视为删除成功
+     * 3. 有对象删除失败时抛出异常，调用方可以对整个列表重试（删除是幂等的）
+     * 
+     * @param objectNames 对象路径列表
+     * @throws CustomException 有对象删除失败时
+     */
+    public void deleteFiles(List<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return;
+        }
+        List<String> failed = removeObjects(objectNames);
+        if (!failed.isEmpty()) {
+            throw new CustomException(500, "从 MinIO 删除文件失败: " + failed.size() + " 个对象");
+        }
+        log.info("批量删除 {} 个对象", objectNames.size());
+    }
+
+    /**
+     * 批量删除对象，失败只记录日志
+     *
+     * @return 删除失败的对象路径
+     */
+    private List<String> removeObjects(List<String> objectNames) {
+        if (fileCache != null) {
+            objectNames.forEach(fileCache::invalidate);
+        }
+        List<String> failed = new ArrayList<>();
+        List<DeleteObject> objects = objectNames.stream().map(DeleteObject::new).toList();
+        // removeObjects 是惰性执行的，必须遍历结果才会真正发起删除请求
+        for (Result<DeleteError> result : minioClient.removeObjects(
+                RemoveObjectsArgs.builder().bucket(bucketName).objects(objects).build())) {
+            try {
+                DeleteError error = result.get();
+                failed.add(error.objectName());
+                log.warn("删除对象失败: {}, 原因: {}", error.objectName(), error.message());
+            } catch (Exception e) {
+                failed.add(e.getMessage());
+                log.warn("删除对象失败: {}", e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 删除指定前缀下的所有对象，失败只记录日志
+     *
+     * @param prefix 对象路径前缀
+     */
+    public void deleteByPrefix(String prefix) {
+        try {
+            List<String> objectNames = new ArrayList<>();
+            for (Result<Item> result : minioClient.listObjects(
+                    ListObjectsArgs.builder().bucket(bucketName).prefix(prefix).recursive(true).build())) {
+                objectNames.add(result.get().objectName());
+            }
+            if (!objectNames.isEmpty()) {
+                removeObjects(objectNames);
+                log.info("删除前缀 {} 下的 {} 个对象", prefix, objectNames.size());
+            }
+        } catch (Exception e) {
+            log.warn("删除前缀 {} 下的对象失败: {}", prefix, e.getMessage());
+        }
+    }
+
     /**
      * 生成文件存储路径
      * 格式：年/月/日/UUID-原始文件名
@@ -142,6 +552,9 @@ public class MinioService {
      * @throws CustomException 文件删除失败时
      */
     public void deleteFile(String filePath) {
+        if (fileCache != null) {
+            fileCache.invalidate(filePath);
+        }
         try {
             minioClient.removeObject(
                     RemoveObjectArgs.builder()
@@ -192,9 +605,10 @@ public class MinioService {
      * 获取文件内容输入流
      * 
      * 实现思路：
-     * 1. 构建GetObjectArgs对象，指定存储桶和文件路径
-     * 2. 调用MinIO客户端的getObject方法获取文件流
-     * 3. 返回InputStream供调用方读取文件内容
+     * 1. 启用本地缓存时先查本地缓存，对象路径包含UUID、写入后不再修改，命中时直接读取本地文件，不再向MinIO查询ETag
+     * 2. 未命中时从MinIO下载到本地缓存（附带ETag条件，避免缓存下载期间被修改的内容），再读取本地文件；
+     *    同一对象同时未命中时只有一个调用方下载，其他调用方等待该次下载完成后读取同一个缓存文件
+     * 3. 超过单对象缓存上限或缓存失败时，直接返回MinIO的文件流
      * 4. 调用方负责关闭输入流以释放资源
      * 5. 异常处理：捕获并转换为自定义异常
      * 6. 适用于文件内容读取、解析等场景
@@ -204,11 +618,335 @@ public class MinioService {
      * @throws CustomException 文件读取失败时
      */
     public InputStream getFileContent(String filePath) {
+        Optional<LocalFileCache.Entry> cached = cachedFile(filePath);
+        if (cached.isPresent()) {
+            try {
+                return Channels.newInputStream(FileChannel.open(cached.get().path(), StandardOpenOption.READ));
+            } catch (IOException e) {
+                // 文件刚好被淘汰，直接读取 MinIO
+                log.debug("读取本地缓存文件失败: {}, {}", filePath, e.getMessage());
+            }
+        }
+        return getObject(filePath);
+    }
+
+    /**
+     * 获取文件的本地缓存文件
+     * 未命中时下载到本地缓存（同一对象并发未命中只下载一次），供需要按文件随机访问的调用方直接读取
+     *
+     * @param filePath MinIO中的文件路径
+     * @return 本地缓存文件；未启用缓存、超过单对象缓存上限或缓存失败时为空
+     */
+    public Optional<Path> getCachedFile(String filePath) {
+        return cachedFile(filePath).map(LocalFileCache.Entry::path);
+    }
+
+    /**
+     * 把文件指定范围的内容写入目标通道
+     * 
+     * 实现思路：
+     * 1. 命中本地缓存时使用FileChannel.transferTo，由操作系统直接在文件和目标通道之间拷贝，不经过用户态缓冲区
+     * 2. 未命中且请求的是整个文件时，边从MinIO读取边写给客户端，同时写入缓存临时文件，
+     *    传输完成后才登记到缓存；客户端断开或读取失败时丢弃临时文件。
+     *    该对象正在被其他调用方写入缓存时不再重复写入，直接从MinIO读取
+     * 3. 只读取部分范围时不为此下载整个文件，直接发起范围请求
+     * 4. 从MinIO读取时通过固定大小的缓冲区循环拷贝，内存占用与文件大小无关
+     * 
+     * @param filePath MinIO中的文件路径
+     * @param offset   起始偏移量
+     * @param length   写入长度
+     * @param target   目标通道，由调用方关闭
+     * @return 写入的字节数
+     * @throws CustomException 读取失败时
+     * @throws IOException     写入目标通道失败时
+     */
+    public long transferTo(String filePath, long offset, long length, WritableByteChannel target) throws IOException {
+        Optional<LocalFileCache.Entry> hit = cacheHit(filePath);
+        if (hit.isPresent()) {
+            try (FileChannel channel = FileChannel.open(hit.get().path(), StandardOpenOption.READ)) {
+                long end = Math.min(channel.size(), offset + length);
+                long position = offset;
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, target);
+                }
+                return end - offset;
+            } catch (NoSuchFileException e) {
+                log.debug("本地缓存文件已被淘汰: {}", filePath);
+            }
+        }
+
+        ObjectInfo info = fileCache == null || cacheFills.containsKey(filePath) ? null : statForCache(filePath);
+        if (info != null && offset == 0 && length >= info.size() && cacheable(info)) {
+            Optional<InputStream> source = openForCache(filePath, info);
+            if (source.isPresent()) {
+                try (InputStream inputStream = source.get()) {
+                    LocalFileCache.Entry entry = fileCache.put(filePath, normalizeEtag(info.etag()),
+                            new TeeInputStream(inputStream, target));
+                    meterRegistry.counter("smartdoc.minio.download.bytes", "mode", "cache-fill").increment(entry.size());
+                    return entry.size();
+                }
+            }
+        } else if (fileCache != null) {
+            meterRegistry.counter("smartdoc.minio.cache.requests", "result", "bypass").increment();
+        }
+
+        long written = 0;
+        try (ReadableByteChannel source = Channels.newChannel(getFileContent(filePath, offset, length))) {
+            ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    written += target.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 查找或建立文件的本地缓存
+     *
+     * 实现思路：
+     * 1. 未启用缓存时返回空，命中时直接返回缓存条目
+     * 2. 未命中时登记一次填充，已有其他调用方在填充同一对象时等待其结果，不重复下载
+     * 3. 填充时小于单对象上限的文件带ETag条件下载到缓存，超出上限时不缓存
+     * 4. 任何缓存环节失败都只记录日志并返回空，由调用方直接读取MinIO
+     */
+    private Optional<LocalFileCache.Entry> cachedFile(String filePath) {
+        Optional<LocalFileCache.Entry> hit = cacheHit(filePath);
+        if (fileCache == null || hit.isPresent()) {
+            return hit;
+        }
+
+        CompletableFuture<Optional<LocalFileCache.Entry>> fill = new CompletableFuture<>();
+        CompletableFuture<Optional<LocalFileCache.Entry>> inFlight = cacheFills.putIfAbsent(filePath, fill);
+        if (inFlight != null) {
+            meterRegistry.counter("smartdoc.minio.cache.requests", "result", "coalesced").increment();
+            return inFlight.join();
+        }
+        Optional<LocalFileCache.Entry> entry = Optional.empty();
+        try {
+            entry = fillCache(filePath);
+            return entry;
+        } finally {
+            cacheFills.remove(filePath, fill);
+            fill.complete(entry);
+        }
+    }
+
+    /**
+     * 下载对象并写入本地缓存，失败或超出单对象上限时返回空
+     */
+    private Optional<LocalFileCache.Entry> fillCache(String filePath) {
+        ObjectInfo info = statForCache(filePath);
+        if (info == null) {
+            return Optional.empty();
+        }
+        if (!cacheable(info)) {
+            meterRegistry.counter("smartdoc.minio.cache.requests", "result", "bypass").increment();
+            return Optional.empty();
+        }
+
+        Optional<InputStream> source = openForCache(filePath, info);
+        if (source.isEmpty()) {
+            return Optional.empty();
+        }
+        try (InputStream inputStream = source.get()) {
+            LocalFileCache.Entry entry = fileCache.put(filePath, normalizeEtag(info.etag()), inputStream);
+            meterRegistry.counter("smartdoc.minio.download.bytes", "mode", "cache-fill").increment(entry.size());
+            return Optional.of(entry);
+        } catch (Exception e) {
+            log.warn("本地文件缓存不可用，直接读取 MinIO: {}, {}", filePath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 查找本地缓存，命中时记录节省的下载字节数；未启用缓存时返回空
+     * 缓存的对象路径包含UUID、内容不可变，命中时不向MinIO校验ETag
+     */
+    private Optional<LocalFileCache.Entry> cacheHit(String filePath) {
+        if (fileCache == null) {
+            return Optional.empty();
+        }
+        Optional<LocalFileCache.Entry> hit = fileCache.get(filePath);
+        if (hit.isPresent()) {
+            meterRegistry.counter("smartdoc.minio.cache.requests", "result", "hit").increment();
+            meterRegistry.counter("smartdoc.minio.cache.bytes.saved").increment(hit.get().size());
+        }
+        return hit;
+    }
+
+    /**
+     * 获取未命中对象的元信息，用于判断是否缓存及下载时的ETag条件；失败时返回 null
+     */
+    private ObjectInfo statForCache(String filePath) {
+        try {
+            return statFile(filePath);
+        } catch (Exception e) {
+            log.warn("本地文件缓存不可用，直接读取 MinIO: {}, {}", filePath, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean cacheable(ObjectInfo info) {
+        return info.size() <= fileCacheConfig.getMaxObjectSize().toBytes();
+    }
+
+    /**
+     * 带ETag条件打开对象，避免把查找缓存之后被修改的内容写入旧版本的缓存；失败时返回空
+     */
+    private Optional<InputStream> openForCache(String filePath, ObjectInfo info) {
+        meterRegistry.counter("smartdoc.minio.cache.requests", "result", "miss").increment();
+        try {
+            return Optional.of(minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(filePath)
+                            .matchETag(info.etag())
+                            .build()));
+        } catch (Exception e) {
+            log.warn("本地文件缓存不可用，直接读取 MinIO: {}, {}", filePath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 读取时把读到的内容同时写入目标通道的输入流，用于一边写入缓存文件一边响应客户端
+     */
+    private static class TeeInputStream extends FilterInputStream {
+
+        private final WritableByteChannel target;
+
+        TeeInputStream(InputStream in, WritableByteChannel target) {
+            super(in);
+            this.target = target;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                write(ByteBuffer.wrap(new byte[]{(byte) b}));
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                write(ByteBuffer.wrap(b, off, n));
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("TeeInputStream 不支持 skip");
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * 直接从MinIO获取文件流，不经过本地缓存
+     */
+    private InputStream getObject(String filePath) {
+        try {
+            return minioClient.getObject(
+                GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(filePath)
+                    .build()
+            );
+        } catch (Exception e) {
+            log.error("获取文件内容失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "获取 MinIO 文件内容失败");
+        }
+    }
+
+    private static String normalizeEtag(String etag) {
+        return etag == null ? "" : etag.replace("\"", "");
+    }
+
+    /**
+     * 获取对象内容输入流，对象不存在时返回空
+     * 用于读取可能尚未生成的派生对象，避免先 statObject 再 getObject 的两次往返
+     *
+     * @param objectName 对象路径
+     * @return 对象内容的输入流，调用方负责关闭
+     * @throws CustomException 读取失败（对象不存在除外）时
+     */
+    public Optional<InputStream> getFileContentIfExists(String objectName) {
+        try {
+            return Optional.of(minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build()
+            ));
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            log.error("获取对象内容失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "获取 MinIO 文件内容失败");
+        } catch (Exception e) {
+            log.error("获取对象内容失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "获取 MinIO 文件内容失败");
+        }
+    }
+
+    /**
+     * 获取对象元信息
+     *
+     * @param filePath MinIO中的文件路径
+     * @return 对象大小、ETag和内容类型
+     * @throws CustomException 获取失败时
+     */
+    public ObjectInfo statFile(String filePath) {
+        try {
+            StatObjectResponse stat = minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(filePath)
+                            .build()
+            );
+            return new ObjectInfo(stat.size(), stat.etag(), stat.contentType());
+        } catch (Exception e) {
+            log.error("获取文件信息失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "获取 MinIO 文件信息失败");
+        }
+    }
+
+    /**
+     * 获取文件指定范围的内容输入流（HTTP Range 请求）
+     * 
+     * 实现思路：
+     * 1. 在GetObjectArgs中设置offset和length，MinIO只返回该范围的字节
+     * 2. 适用于只需要文件头（类型检测、预览）或分段读取的场景，避免下载整个对象
+     * 3. 调用方负责关闭输入流
+     * 
+     * @param filePath MinIO中的文件路径
+     * @param offset 起始偏移量
+     * @param length 读取长度
+     * @return 指定范围内容的输入流
+     * @throws CustomException 文件读取失败时
+     */
+    public InputStream getFileContent(String filePath, long offset, long length) {
         try {
             return minioClient.getObject(
                 GetObjectArgs.builder()
                     .bucket(bucketName)
                     .object(filePath)
+                    .offset(offset)
+                    .length(length)
                     .build()
             );
         } catch (Exception e) {
@@ -289,7 +1027,7 @@ public class MinioService {
             String objectName = getFilePath(fileName);
             
             // 确保 bucket 存在
-            initBucket();
+            ensureBucket();
             
             // 直接使用 MinIO 客户端上传文件，不经过 MultipartFile
             try (InputStream fileInputStream = Files.newInputStream(tempFile)) {
@@ -1,9 +1,9 @@
 package com.mtmn.smartdoc.service;
 
-import com.mtmn.smartdoc.common.ApacheTikaDocumentParser;
 import com.mtmn.smartdoc.common.CustomException;
 import com.mtmn.smartdoc.po.DocumentPO;
 import com.mtmn.smartdoc.po.KnowledgeBase;
+import com.mtmn.smartdoc.utils.ContextPacker;
 import com.mtmn.smartdoc.utils.SseUtil;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
@@ -22,11 +22,10 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.IntStream;
+import java.util.Optional;
 
 import static com.mtmn.smartdoc.service.impl.KnowledgeBaseServiceImpl.getCurrentUserId;
 import static com.mtmn.smartdoc.service.impl.KnowledgeBaseServiceImpl.getStoreKnowledgeBaseName;
@@ -44,9 +43,12 @@ import static com.mtmn.smartdoc.service.impl.KnowledgeBaseServiceImpl.getStoreKn
 @RequiredArgsConstructor
 public class NaiveRag implements BaseRag {
 
-    private final MinioService minioService;
+    private final ParsedTextService parsedTextService;
     private final SseUtil sseUtil;
     private final MilvusService milvusService;
+    private final RerankService rerankService;
+    private final ContextPacker contextPacker;
+    private final EmbeddingCacheService embeddingCacheService;
 
     /**
      * 获取RAG方法名称
@@ -72,21 +74,21 @@ public class NaiveRag implements BaseRag {
      * 3. 创建对应的嵌入模型实例
      * 4. 获取当前用户ID并构建知识库的集合名称
      * 5. 创建Milvus嵌入存储实例
-     * 6. 遍历文档列表，使用Apache Tika解析每个文档内容
-     * 7. 使用文档分割器将长文档分割成较小的文本段
-     * 8. 为每个文本段生成嵌入向量
-     * 9. 将文本段和对应的嵌入向量存储到Milvus中
-     * 10. 记录每个文档的处理结果并返回成功状态列表
+     * 6. 遍历文档列表，相同内容在相同分块参数和嵌入模型下已有缓存时，直接复用缓存的文本段和向量
+     * 7. 未命中缓存时读取文档的解析文本（同一文件只解析一次），并用文档分割器将长文档分割成较小的文本段
+     * 8. 为每个文本段生成嵌入向量，并写入缓存供其他知识库中的相同文件复用
+     * 9. 删除该文档已有的向量后，将带文档ID的文本段和对应的嵌入向量存储到Milvus中，重试时不会重复写入
+     * 10. 为每个文档记录带文档ID的处理结果（片段数、耗时、失败原因）并返回
      * 
      * @param kbName 知识库名称
      * @param documentPoList 要建立索引的文档列表
      * @param params 索引构建参数，包含分块配置和嵌入模型等
-     * @return 每个文档的索引构建结果列表，true表示成功，false表示失败
+     * @return 每个文档的索引构建结果
      * @throws CustomException 当嵌入模型为空时抛出
      * @throws BadCredentialsException 当用户未登录时抛出
      */
     @Override
-    public List<Boolean> buildIndex(String kbName, List<DocumentPO> documentPoList, Map<String, Object> params) {
+    public List<IndexResult> buildIndex(String kbName, List<DocumentPO> documentPoList, Map<String, Object> params) {
         // 获取配置参数
         Integer chunkSize = (Integer) params.getOrDefault("chunk-size", 512);
         Integer chunkOverlap = (Integer) params.getOrDefault("chunk-overlap", 50);
@@ -100,7 +102,7 @@ public class NaiveRag implements BaseRag {
         // 创建Embedding模型
         EmbeddingModel embeddingModel = EmbeddingService.createEmbeddingModel(embeddingModelName);
 
-        List<Boolean> success = new ArrayList<>();
+        List<IndexResult> results = new ArrayList<>(documentPoList.size());
 
         log.info("使用朴素RAG配置，块大小：{}，重叠大小：{}", chunkSize, chunkOverlap);
 
@@ -113,54 +115,57 @@ public class NaiveRag implements BaseRag {
 
         MilvusEmbeddingStore embeddingStore = milvusService.getEmbeddingStore(collectionName, embeddingModel.dimension());
 
-        List<Document> documents = new ArrayList<>();
-
-        ApacheTikaDocumentParser documentParser = new ApacheTikaDocumentParser();
+        DocumentSplitter splitter = DocumentSplitters.recursive(chunkSize, chunkOverlap);
 
         for (DocumentPO documentPo : documentPoList) {
             String filePath = documentPo.getFilePath();
+            String contentHash = documentPo.getContentHash();
+            long startTime = System.nanoTime();
+
+            try {
+                List<TextSegment> segments;
+                List<Embedding> embeddings;
+
+                Optional<EmbeddingCacheService.CachedEmbeddings> cached =
+                        embeddingCacheService.load(contentHash, embeddingModelName, chunkSize, chunkOverlap);
+                if (cached.isPresent()) {
+                    segments = cached.get().segments();
+                    embeddings = cached.get().embeddings();
+                } else {
+                    // 读取解析文本，同一文件只在第一次读取时用Apache Tika解析
+                    String text = parsedTextService.readText(filePath);
+                    log.debug("成功从URL加载文档, 文档路径: {}", filePath);
+
+                    if (text.isBlank()) {
+                        results.add(IndexResult.failure(documentPo.getId(), "文档内容为空", false, startTime));
+                        continue;
+                    }
+                    log.debug("文档内容预览：{}", text.substring(0, Math.min(200, text.length())) + "...");
+                    Document document = Document.from(text);
+
+                    // 使用配置的chunkSize和chunkOverlap进行文档切分
+                    segments = splitter.split(document);
+                    log.info("文档已切分为{}个片段", segments.size());
+
+                    if (segments.isEmpty()) {
+                        log.warn("文档内容为空，跳过处理");
+                        results.add(IndexResult.failure(documentPo.getId(), "文档内容为空", false, startTime));
+                        continue;
+                    }
+
+                    embeddings = embeddingModel.embedAll(segments).content();
+                    embeddingCacheService.save(contentHash, embeddingModelName, chunkSize, chunkOverlap, segments, embeddings);
+                }
 
-            try (InputStream inputStream = minioService.getFileContent(filePath)) {
-                // 使用Apache Tika解析器解析文档
-                Document document = documentParser.parse(inputStream);
-                documents.add(document);
-
-                log.debug("成功从URL加载文档, 文档路径: {}", filePath);
+                // 将文档片段和向量存入向量库
+                milvusService.replaceDocumentVectors(embeddingStore, documentPo.getId(), embeddings, segments);
+                results.add(IndexResult.success(documentPo.getId(), segments.size(), startTime));
             } catch (Exception e) {
                 log.error("解析文档失败: {}, 错误: {}", filePath, e.getMessage(), e);
+                results.add(IndexResult.failure(documentPo.getId(), e.getMessage(), true, startTime));
             }
         }
-
-        for (Document document : documents) {
-            log.debug("处理文档，元数据：{}", document.metadata());
-
-            if (document.text() != null && !document.text().isEmpty()) {
-                log.debug("文档内容预览：{}", document.text().substring(0, Math.min(200, document.text().length())) + "...");
-
-                // 使用配置的chunkSize和chunkOverlap进行文档切分
-                DocumentSplitter splitter = DocumentSplitters.recursive(chunkSize, chunkOverlap);
-                List<TextSegment> segments = splitter.split(document);
-
-                log.info("文档已切分为{}个片段", segments.size());
-
-                // 将文档片段转换为向量并存入向量库
-                if (segments.isEmpty()) {
-                    log.warn("文档内容为空，跳过处理");
-                    continue;
-                }
-
-                List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
-
-                embeddingStore.addAll(embeddings, segments);
-
-                success.add(true);
-
-                continue;
-            }
-
-            success.add(false);
-        }
-        return success;
+        return results;
     }
 
     /**
@@ -204,9 +209,9 @@ public class NaiveRag implements BaseRag {
      * 3. 在Milvus向量数据库中进行相似度检索
      * 4. 构建内容检索器，设置最大结果数量
      * 5. 检索与问题最相关的文档片段
-     * 6. 如果没有找到相关内容，返回提示信息
+     * 6. 如果没有找到相关内容，返回提示信息，否则对候选片段进行重排序
      * 7. 构建包含检索指导的提示模板，提高回答质量
-     * 8. 将检索到的文档片段格式化为上下文
+     * 8. 去除近似重复片段，按模型 token 预算将检索到的文档片段组装为上下文
      * 9. 使用SSE流式输出处理聊天响应
      * 10. 异常处理：捕获并返回友好的错误信息
      * 
@@ -244,6 +249,10 @@ public class NaiveRag implements BaseRag {
                 return sseUtil.sendFluxMessage("知识库中没有找到与您问题相关的信息。");
             }
 
+            // 使用交叉编码器对候选片段重排序，只保留最相关的片段
+            List<String> segmentTexts = rerankService.rerank(knowledgeBase, question,
+                    contents.stream().map(content -> content.textSegment().text()).toList());
+
             String promptTemplate = """
                     作为一个精确的RAG系统助手，请严格按照以下指南回答用户问题：
                     1. 仔细分析问题，识别关键词和核心概念。
@@ -262,21 +271,12 @@ public class NaiveRag implements BaseRag {
                     ···
                     请提供准确且相关的回答：""";
 
-            // 准备检索到的文档列表和提示词片段
-            List<String> docContents = new ArrayList<>();
-            StringBuilder contextBuilder = new StringBuilder();
-
-            // 使用IntStream处理文档片段
-            IntStream.range(0, contents.size()).forEach(i -> {
-                String segmentText = contents.get(i).textSegment().text();
-                contextBuilder.append(String.format("【片段%d】\n%s\n\n", i + 1, segmentText));
-//                docContents.add(String.format("出处 [%d] %s\n\n", i + 1, segmentText));
-                docContents.add(segmentText);
-            });
+            // 去除近似重复片段，并按当前模型的 token 预算组装上下文
+            ContextPacker.PackedContext packedContext = contextPacker.pack(segmentTexts);
 
-            String prompt = String.format(promptTemplate, contextBuilder.toString(), question);
+            String prompt = String.format(promptTemplate, question, packedContext.context());
 
-            return sseUtil.handleStreamingChatResponse(prompt, docContents);
+            return sseUtil.handleStreamingChatResponse(prompt, packedContext.chunks());
         } catch (Exception e) {
             log.error("RAG问答处理失败", e);
             // 生成错误对象的新格式响应
@@ -0,0 +1,164 @@
+package com.mtmn.smartdoc.service;
+
+import com.mtmn.smartdoc.common.CustomException;
+import com.mtmn.smartdoc.config.ParseConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.tika.Tika;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 文档解析文本缓存服务
+ * 每个 MinIO 对象只用 Tika 解析一次，提取的文本以 gzip 压缩后保存为派生对象，
+ * 索引构建、文档分析和重建索引都复用该文本
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/16 09:15
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class ParsedTextService {
+
+    /**
+     * 解析器版本，升级 Tika 或修改文本提取方式后旧缓存自动失效
+     */
+    public static final String PARSER_VERSION = "tika-" + Tika.getString().replaceAll("[^0-9.]", "") + "-v1";
+
+    private static final String TEXT_PREFIX = ContentStoreService.DERIVED_PREFIX + "text/";
+
+    private final MinioService minioService;
+    private final DocumentParseService documentParseService;
+    private final ParseConfig parseConfig;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 以流的方式打开文档的解析文本
+     *
+     * 实现思路：
+     * 1. 按对象路径、解析器版本和字符上限定位缓存的文本对象，存在时直接返回解压后的字符流
+     * 2. 未命中时交给解析线程池用 Tika 解析原始文件（有超时和字符上限），文本边解析边压缩写入临时文件，内存中不保留完整文本
+     * 3. 将临时文件上传为缓存对象，并直接从临时文件返回字符流，关闭时删除临时文件
+     * 4. 空白文档缓存为空文本，避免每次都重新解析
+     *
+     * @param filePath 原始文件在 MinIO 中的路径
+     * @return 文本字符流，调用方负责关闭
+     * @throws CustomException 读取或解析失败时
+     */
+    public Reader openText(String filePath) {
+        String objectName = textObjectName(filePath);
+        Optional<InputStream> cached = minioService.getFileContentIfExists(objectName);
+        if (cached.isPresent()) {
+            meterRegistry.counter("smartdoc.parse.text.cache", "result", "hit").increment();
+            try {
+                return gzipReader(cached.get());
+            } catch (IOException e) {
+                closeQuietly(cached.get());
+                log.warn("读取文本缓存失败，重新解析: {}, {}", objectName, e.getMessage());
+            }
+        }
+        meterRegistry.counter("smartdoc.parse.text.cache", "result", "miss").increment();
+
+        Path tempFile = parseToTempFile(filePath);
+        try {
+            minioService.uploadLocalFile(objectName, tempFile, "application/gzip");
+            log.info("保存解析文本缓存: {}, 压缩后大小: {} 字节", objectName, Files.size(tempFile));
+        } catch (Exception e) {
+            // 缓存写入失败不影响本次读取
+            log.warn("保存解析文本缓存失败: {}, {}", objectName, e.getMessage());
+        }
+
+        try {
+            return gzipReader(Files.newInputStream(tempFile, StandardOpenOption.DELETE_ON_CLOSE));
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            log.error("读取解析文本失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "读取解析文本失败");
+        }
+    }
+
+    /**
+     * 读取文档的完整解析文本
+     * 适用于需要完整字符串的调用方（分块、提示词组装），大文本优先使用 {@link #openText(String)}
+     *
+     * @param filePath 原始文件在 MinIO 中的路径
+     * @return 解析文本，空白文档返回空字符串
+     * @throws CustomException 读取或解析失败时
+     */
+    public String readText(String filePath) {
+        try (Reader reader = openText(filePath)) {
+            StringWriter writer = new StringWriter();
+            reader.transferTo(writer);
+            return writer.toString();
+        } catch (IOException e) {
+            log.error("读取解析文本失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "读取解析文本失败");
+        }
+    }
+
+    /**
+     * 文档所有解析文本缓存的路径前缀，原始对象被删除时按前缀清理
+     *
+     * @param filePath 原始文件在 MinIO 中的路径
+     * @return 路径前缀
+     */
+    public static String textObjectPrefix(String filePath) {
+        return TEXT_PREFIX + filePath + "/";
+    }
+
+    /**
+     * 截断的文本与字符上限有关，上限也是缓存键的一部分，调整上限后按新上限重新解析
+     */
+    private String textObjectName(String filePath) {
+        return textObjectPrefix(filePath) + PARSER_VERSION + "-" + parseConfig.getMaxCharacters() + ".txt.gz";
+    }
+
+    /**
+     * 在解析线程池中解析原始文件，文本压缩写入临时文件
+     */
+    private Path parseToTempFile(String filePath) {
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("smartdoc_text_", ".txt.gz");
+            documentParseService.parseToFile(filePath, tempFile);
+            return tempFile;
+        } catch (CustomException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        } catch (IOException e) {
+            log.error("创建临时文件失败: {}", e.getMessage(), e);
+            throw new CustomException(500, "解析文档失败: " + e.getMessage());
+        }
+    }
+
+    private static Reader gzipReader(InputStream inputStream) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(inputStream), StandardCharsets.UTF_8));
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+}
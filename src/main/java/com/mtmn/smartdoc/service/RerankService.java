@@ -0,0 +1,205 @@
+package com.mtmn.smartdoc.service;
+
+import ai.onnxruntime.OrtSession;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mtmn.smartdoc.config.RerankConfig;
+import com.mtmn.smartdoc.po.KnowledgeBase;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.model.scoring.onnx.OnnxScoringModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * 检索结果重排序服务
+ * 在向量检索与提示词组装之间，使用本地 ONNX 交叉编码器对候选片段重新打分排序
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/11 14:05
+ */
+@Service
+@Log4j2
+@RequiredArgsConstructor
+public class RerankService {
+
+    private final RerankConfig rerankConfig;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private volatile ScoringModel scoringModel;
+    private ExecutorService executorService;
+
+    /**
+     * 初始化交叉编码器和打分线程池
+     *
+     * 实现思路：
+     * 1. 未启用或未配置模型路径时跳过加载，重排序直接回退为原始顺序
+     * 2. 每个 ONNX 会话只使用单线程推理，并行度由打分线程池控制，避免线程数相乘抢占 CPU
+     * 3. 模型加载失败只记录日志，不影响应用启动
+     */
+    @PostConstruct
+    public void init() {
+        if (!rerankConfig.isEnabled()) {
+            log.info("重排序未启用");
+            return;
+        }
+        if (!StringUtils.hasText(rerankConfig.getModelPath()) || !StringUtils.hasText(rerankConfig.getTokenizerPath())) {
+            log.warn("重排序已启用，但未配置模型路径或 tokenizer 路径，跳过重排序");
+            return;
+        }
+
+        try {
+            OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+            options.setIntraOpNumThreads(1);
+            scoringModel = new OnnxScoringModel(rerankConfig.getModelPath(), options, rerankConfig.getTokenizerPath());
+
+            AtomicInteger threadIndex = new AtomicInteger();
+            executorService = Executors.newFixedThreadPool(Math.max(1, rerankConfig.getThreads()), r -> {
+                Thread thread = new Thread(r, "rerank-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("重排序模型加载完成: {}", rerankConfig.getModelPath());
+        } catch (Exception e) {
+            scoringModel = null;
+            log.error("重排序模型加载失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * 对候选片段重排序
+     *
+     * 实现思路：
+     * 1. 合并全局配置与知识库索引参数中的 rerank / rerank-top-n / rerank-time-budget-ms
+     * 2. 模型不可用、知识库关闭重排序或候选数量不超过1时，原样返回候选片段
+     * 3. 将候选按 batch-size 分批，提交到线程池并行调用交叉编码器打分
+     * 4. 在耗时预算内等待全部批次，超时或失败时取消剩余任务并回退为原始顺序
+     * 5. 按分数降序排序后截取 topN 返回
+     *
+     * @param knowledgeBase 知识库，用于读取重排序的覆盖参数
+     * @param question      用户问题
+     * @param candidates    向量检索得到的候选片段（按向量相似度排序）
+     * @return 重排序并截断后的片段列表
+     */
+    public List<String> rerank(KnowledgeBase knowledgeBase, String question, List<String> candidates) {
+        ScoringModel model = scoringModel;
+        if (model == null || candidates.size() <= 1) {
+            return candidates;
+        }
+
+        RerankOptions options = resolveOptions(knowledgeBase);
+        if (!options.enabled()) {
+            return candidates;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int batchSize = Math.max(1, rerankConfig.getBatchSize());
+        List<CompletableFuture<List<Double>>> futures = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += batchSize) {
+            List<TextSegment> batch = candidates.subList(from, Math.min(from + batchSize, candidates.size()))
+                    .stream()
+                    .map(TextSegment::from)
+                    .toList();
+            futures.add(CompletableFuture.supplyAsync(() -> model.scoreAll(batch, question).content(), executorService));
+        }
+
+        double[] scores = new double[candidates.size()];
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(options.timeBudget().toMillis(), TimeUnit.MILLISECONDS);
+
+            int offset = 0;
+            for (CompletableFuture<List<Double>> future : futures) {
+                for (Double score : future.join()) {
+                    scores[offset++] = score;
+                }
+            }
+        } catch (TimeoutException e) {
+            futures.forEach(f -> f.cancel(true));
+            meterRegistry.counter("smartdoc.rag.rerank.fallback", "reason", "timeout").increment();
+            log.warn("重排序超过耗时预算 {}，回退为向量检索顺序", options.timeBudget());
+            return truncate(candidates, options.topN());
+        } catch (Exception e) {
+            futures.forEach(f -> f.cancel(true));
+            meterRegistry.counter("smartdoc.rag.rerank.fallback", "reason", "error").increment();
+            log.error("重排序失败，回退为向量检索顺序: {}", e.getMessage(), e);
+            return truncate(candidates, options.topN());
+        } finally {
+            sample.stop(meterRegistry.timer("smartdoc.rag.rerank"));
+        }
+
+        List<String> reranked = IntStream.range(0, candidates.size())
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> scores[i]).reversed())
+                .limit(options.topN())
+                .map(candidates::get)
+                .toList();
+
+        log.debug("[重排序] 候选数量: {}, 保留数量: {}", candidates.size(), reranked.size());
+        return reranked;
+    }
+
+    /**
+     * 解析知识库级别的重排序参数，未设置的项使用全局配置
+     */
+    private RerankOptions resolveOptions(KnowledgeBase knowledgeBase) {
+        boolean enabled = true;
+        int topN = rerankConfig.getTopN();
+        Duration timeBudget = rerankConfig.getTimeBudget();
+
+        String indexParam = knowledgeBase == null ? null : knowledgeBase.getIndexParam();
+        if (StringUtils.hasText(indexParam)) {
+            try {
+                Map<String, Object> params = objectMapper.readValue(indexParam, new TypeReference<Map<String, Object>>() {
+                });
+                if (params.get("rerank") instanceof Boolean b) {
+                    enabled = b;
+                }
+                if (params.get("rerank-top-n") instanceof Number n) {
+                    topN = n.intValue();
+                }
+                if (params.get("rerank-time-budget-ms") instanceof Number n) {
+                    timeBudget = Duration.ofMillis(n.longValue());
+                }
+            } catch (Exception e) {
+                log.error("解析索引参数JSON失败", e);
+            }
+        }
+        return new RerankOptions(enabled, Math.max(1, topN), timeBudget);
+    }
+
+    private static List<String> truncate(List<String> candidates, int topN) {
+        return candidates.size() <= topN ? candidates : candidates.subList(0, topN);
+    }
+
+    private record RerankOptions(boolean enabled, int topN, Duration timeBudget) {
+    }
+}
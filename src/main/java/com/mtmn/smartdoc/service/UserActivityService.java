@@ -14,56 +14,52 @@ public interface UserActivityService {
     
     /**
      * 记录用户活动
+     * 活动记录异步批量写入，方法返回时可能尚未落库
      * 
      * @param userId 用户ID
      * @param activityType 活动类型
      * @param documentId 文档ID，可为null
      * @param documentName 文档名称，可为null
      * @param description 活动描述，可为null
-     * @return 保存的活动记录
      */
-    UserActivity recordActivity(Long userId, String activityType, Long documentId, 
-                              String documentName, String description);
+    void recordActivity(Long userId, String activityType, Long documentId, 
+                        String documentName, String description);
     
     /**
      * 记录文档分析活动（摘要生成）
      * 
      * @param userId 用户ID
      * @param documentId 文档ID
-     * @param documentName 文档名称
-     * @return 保存的活动记录
+     * @param documentName 文档名称，为null时按文档ID取文档标题
      */
-    UserActivity recordSummaryAnalysis(Long userId, Long documentId, String documentName);
+    void recordSummaryAnalysis(Long userId, Long documentId, String documentName);
     
     /**
      * 记录文档分析活动（关键词提取）
      * 
      * @param userId 用户ID
      * @param documentId 文档ID
-     * @param documentName 文档名称
-     * @return 保存的活动记录
+     * @param documentName 文档名称，为null时按文档ID取文档标题
      */
-    UserActivity recordKeywordsAnalysis(Long userId, Long documentId, String documentName);
+    void recordKeywordsAnalysis(Long userId, Long documentId, String documentName);
     
     /**
      * 记录文档分析活动（安全检查）
      * 
      * @param userId 用户ID
      * @param documentId 文档ID
-     * @param documentName 文档名称
-     * @return 保存的活动记录
+     * @param documentName 文档名称，为null时按文档ID取文档标题
      */
-    UserActivity recordSecurityAnalysis(Long userId, Long documentId, String documentName);
+    void recordSecurityAnalysis(Long userId, Long documentId, String documentName);
     
     /**
      * 记录文档分析活动（文档润色）
      * 
      * @param userId 用户ID
      * @param documentId 文档ID
-     * @param documentName 文档名称
-     * @return 保存的活动记录
+     * @param documentName 文档名称，为null时按文档ID取文档标题
      */
-    UserActivity recordPolishAnalysis(Long userId, Long documentId, String documentName);
+    void recordPolishAnalysis(Long userId, Long documentId, String documentName);
     
     /**
      * 根据用户ID获取活动列表
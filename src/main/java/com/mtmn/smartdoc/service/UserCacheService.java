@@ -0,0 +1,99 @@
+package com.mtmn.smartdoc.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mtmn.smartdoc.po.User;
+import com.mtmn.smartdoc.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 认证用户缓存服务
+ * 按用户名缓存用户实体，请求认证时不再每次查询数据库；
+ * 条目在较短的存活时间后过期，资料、密码或VIP状态变更时显式失效。
+ * 缓存中保存的是只在本类内部持有的副本，每次获取都返回新的副本，
+ * 各请求对认证主体的修改（如更新最后登录时间）不会影响缓存或其他线程
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/18 15:20
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class UserCacheService {
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.security.user-cache.ttl:5m}")
+    private Duration ttl;
+
+    @Value("${application.security.user-cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, User> userCache;
+
+    @PostConstruct
+    public void init() {
+        userCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, userCache, "auth.users");
+    }
+
+    /**
+     * 获取用户
+     *
+     * 实现思路：
+     * 1. 缓存命中时直接使用，不访问数据库
+     * 2. 未命中时按用户名查询数据库，复制后放入缓存，同一用户名的并发请求只查询一次
+     * 3. 用户不存在时不缓存，返回空
+     * 4. 返回缓存条目的副本，缓存中的实例不会被调用方共享
+     *
+     * @param username 用户名
+     * @return 用户实体副本（脱离持久化上下文，修改只影响当前请求）
+     */
+    public Optional<User> getUser(String username) {
+        User cached = userCache.get(username, key -> userRepository.findByUsername(key).map(UserCacheService::copy).orElse(null));
+        return Optional.ofNullable(cached).map(UserCacheService::copy);
+    }
+
+    /**
+     * 使用户缓存失效
+     * 立即失效一次，存在事务时在提交后再失效一次，避免提交前的并发请求把旧数据重新放回缓存
+     *
+     * @param username 用户名
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        userCache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userCache.invalidate(username);
+                }
+            });
+        }
+        log.debug("用户缓存已失效: {}", username);
+    }
+
+    private static User copy(User user) {
+        return user.toBuilder().build();
+    }
+}
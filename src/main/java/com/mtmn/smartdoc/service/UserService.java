@@ -27,6 +27,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final MinioService minioService;
+    private final UserCacheService userCacheService;
     
     /**
      * 获取用户个人资料
@@ -57,8 +58,9 @@ public class UserService {
      * 3. 如果邮箱有变更，验证新邮箱是否已被其他用户使用
      * 4. 更新用户的邮箱等可修改字段
      * 5. 保存更新后的用户实体到数据库
-     * 6. 转换为DTO返回给前端
-     * 7. 使用事务确保数据一致性
+     * 6. 使认证用户缓存失效，后续请求读取到新的资料
+     * 7. 转换为DTO返回给前端
+     * 8. 使用事务确保数据一致性
      * 
      * @param username 用户名
      * @param request 更新请求，包含要修改的用户信息
@@ -80,6 +82,7 @@ public class UserService {
         // user.setFullName(request.getFullName());
         
         User updatedUser = userRepository.save(user);
+        userCacheService.invalidate(username);
         return convertToDTO(updatedUser);
     }
     
@@ -93,7 +96,7 @@ public class UserService {
      * 4. 处理旧头像删除失败的情况，记录警告但不中断流程
      * 5. 调用MinIO服务上传新头像文件
      * 6. 更新用户实体中的头像路径信息
-     * 7. 保存更新后的用户实体到数据库
+     * 7. 保存更新后的用户实体到数据库，并使认证用户缓存失效
      * 8. 转换为DTO返回，包含新头像的URL
      * 9. 使用事务确保数据一致性，捕获异常并转换为业务异常
      * 
@@ -129,6 +132,7 @@ public class UserService {
             // 更新用户头像路径
             user.setAvatarPath(filePath);
             User updatedUser = userRepository.save(user);
+            userCacheService.invalidate(username);
             
             return convertToDTO(updatedUser);
         } catch (Exception e) {
@@ -146,7 +150,7 @@ public class UserService {
      * 3. 使用密码编码器验证当前密码的正确性
      * 4. 使用密码编码器对新密码进行加密
      * 5. 更新用户实体中的密码字段
-     * 6. 保存更新后的用户实体到数据库
+     * 6. 保存更新后的用户实体到数据库，并使认证用户缓存失效
      * 7. 使用事务确保密码修改的原子性
      * 
      * @param username 用户名
@@ -172,6 +176,7 @@ public class UserService {
         // 更新密码
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        userCacheService.invalidate(username);
         
         return true;
     }
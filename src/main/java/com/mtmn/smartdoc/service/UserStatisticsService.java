@@ -0,0 +1,211 @@
+package com.mtmn.smartdoc.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mtmn.smartdoc.dto.DashboardStatisticsDto;
+import com.mtmn.smartdoc.po.UserActivity;
+import com.mtmn.smartdoc.po.UserStatistics;
+import com.mtmn.smartdoc.repository.UserStatisticsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户统计服务
+ * 仪表盘统计数据保存在 user_statistics 表中，文档和分析活动写入时增量更新，
+ * 读取时经本地缓存按主键查询一次；定时任务从明细表重新计算，修正增量更新的偏差
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/19 16:40
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class UserStatisticsService {
+
+    private final UserStatisticsRepository userStatisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${dashboard.statistics.cache-ttl:1m}")
+    private Duration cacheTtl;
+
+    @Value("${dashboard.statistics.cache-max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${dashboard.statistics.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
+
+    private Cache<Long, DashboardStatisticsDto> statisticsCache;
+
+    /**
+     * 重新计算统计使用 READ COMMITTED 事务：INSERT ... SELECT 在 REPEATABLE READ 下会对扫描到的
+     * documents、user_activities 记录加共享临键锁，阻塞期间的文档上传和活动写入；
+     * READ COMMITTED 下对明细表的读取是不加锁的一致性读，只锁写入的统计行。
+     * 一致性读看不到未提交的明细，因此重新计算前先锁定统计行：累加增量的事务提交后才能拿到锁，
+     * 之后的汇总语句使用新的快照，既不会覆盖未提交的增量，也不会把已计入的明细再累加一次
+     */
+    private TransactionTemplate recomputeTransactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        recomputeTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        recomputeTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        statisticsCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, statisticsCache, "dashboard.statistics");
+    }
+
+    /**
+     * 获取用户的仪表盘统计数据
+     *
+     * 实现思路：
+     * 1. 缓存命中时直接返回
+     * 2. 未命中时按主键读取统计行
+     * 3. 统计行不存在（新用户或尚未对账）时从明细表计算一次并写入统计表
+     *
+     * @param userId 用户ID
+     * @return 统计数据（缓存共享的对象，调用方不应修改）
+     */
+    public DashboardStatisticsDto getStatistics(Long userId) {
+        return statisticsCache.get(userId, this::load);
+    }
+
+    /**
+     * 文档数量变化时更新统计
+     *
+     * @param userId 文档所属用户ID
+     * @param delta  新增为正数，删除为负数
+     */
+    public void recordDocuments(Long userId, long delta) {
+        if (userId == null || delta == 0) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                userStatisticsRepository.increment(userId, delta, 0, 0, 0, 0));
+        invalidate(userId);
+    }
+
+    /**
+     * 分析活动写入数据库后更新统计
+     *
+     * 实现思路：
+     * 1. 按用户汇总本批活动中各类分析活动的数量，其他类型的活动不影响统计
+     * 2. 每个用户执行一次增量更新，所有更新在同一个事务中提交；调用方应在插入活动的同一个事务中调用，
+     *    活动记录和统计增量一起提交，对账不会在两者之间把活动重复计入
+     * 3. 使这些用户的缓存失效
+     *
+     * @param activities 已写入的活动记录
+     */
+    public void recordActivities(Collection<UserActivity> activities) {
+        Map<Long, long[]> deltas = new HashMap<>();
+        for (UserActivity activity : activities) {
+            int index = switch (activity.getActivityType()) {
+                case "SUMMARY" -> 0;
+                case "KEYWORDS" -> 1;
+                case "SECURITY" -> 2;
+                case "POLISH" -> 3;
+                default -> -1;
+            };
+            if (index >= 0) {
+                deltas.computeIfAbsent(activity.getUserId(), k -> new long[4])[index]++;
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> deltas.forEach((userId, counts) ->
+                userStatisticsRepository.increment(userId, 0, counts[0], counts[1], counts[2], counts[3])));
+        deltas.keySet().forEach(this::invalidate);
+    }
+
+    /**
+     * 定时对账
+     *
+     * 实现思路：
+     * 1. 按用户ID范围分批，每批用一条语句从文档表和活动表重新计算并覆盖统计行
+     * 2. 每批单独以 READ COMMITTED 隔离级别提交，先锁定本批的统计行再汇总，不锁明细表，也避免长事务长时间锁住统计行
+     * 3. 完成后清空缓存，记录耗时
+     */
+    @Scheduled(initialDelayString = "${dashboard.statistics.reconcile-initial-delay:5m}",
+            fixedDelayString = "${dashboard.statistics.reconcile-interval:1h}")
+    public void reconcile() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            long maxUserId = userStatisticsRepository.findMaxUserId();
+            long rows = 0;
+            for (long fromId = 1; fromId <= maxUserId; fromId += reconcileBatchSize) {
+                long toId = Math.min(fromId + reconcileBatchSize - 1, maxUserId);
+                long from = fromId;
+                rows += recompute(from, toId);
+            }
+            statisticsCache.invalidateAll();
+            log.info("用户统计对账完成，最大用户ID: {}, 影响行数: {}", maxUserId, rows);
+        } catch (Exception e) {
+            log.error("用户统计对账失败", e);
+        } finally {
+            sample.stop(meterRegistry.timer("smartdoc.dashboard.reconcile"));
+        }
+    }
+
+    private DashboardStatisticsDto load(Long userId) {
+        UserStatistics statistics = userStatisticsRepository.findById(userId).orElseGet(() -> {
+            recompute(userId, userId);
+            return userStatisticsRepository.findById(userId).orElseGet(() -> UserStatistics.builder().userId(userId).build());
+        });
+        return DashboardStatisticsDto.builder()
+                .documents(statistics.getDocumentCount())
+                .analysis(statistics.getAnalysisCount())
+                .keywords(statistics.getKeywordsCount())
+                .security(statistics.getSecurityCount())
+                .summary(statistics.getSummaryCount())
+                .polish(statistics.getPolishCount())
+                .build();
+    }
+
+    /**
+     * 在 READ COMMITTED 事务中锁定统计行后重新计算
+     */
+    private int recompute(long fromId, long toId) {
+        Integer updated = recomputeTransactionTemplate.execute(status -> {
+            userStatisticsRepository.lockRange(fromId, toId);
+            return userStatisticsRepository.recompute(fromId, toId);
+        });
+        return updated == null ? 0 : updated;
+    }
+
+    /**
+     * 立即失效一次，存在事务时在提交后再失效一次，避免提交前的并发读取把旧数据重新放回缓存
+     */
+    private void invalidate(Long userId) {
+        statisticsCache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    statisticsCache.invalidate(userId);
+                }
+            });
+        }
+    }
+}
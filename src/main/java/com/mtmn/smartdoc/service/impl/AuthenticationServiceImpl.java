@@ -7,6 +7,7 @@ import com.mtmn.smartdoc.repository.UserRepository;
 import com.mtmn.smartdoc.service.AuthenticationService;
 import com.mtmn.smartdoc.service.JwtService;
 import com.mtmn.smartdoc.service.MinioService;
+import com.mtmn.smartdoc.service.UserCacheService;
 import com.mtmn.smartdoc.vo.AuthenticationResponse;
 import com.mtmn.smartdoc.vo.GitHubUserInfoResponse;
 import com.mtmn.smartdoc.vo.RegisterRequest;
@@ -58,6 +59,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
     private final RestTemplate restTemplate;
     private final MinioService minioService;
+    private final UserCacheService userCacheService;
 
     /**
      * 用户注册
@@ -136,6 +138,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         // 更新最后登录时间
         user.setLastLogin(LocalDateTime.now());
         userRepository.save(user);
+        userCacheService.invalidate(user.getUsername());
 
         // 生成JWT令牌
         var jwtToken = jwtService.generateToken(user);
@@ -290,6 +293,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                 user.setLastLogin(LocalDateTime.now());
 
                 user = userRepository.save(user);
+                userCacheService.invalidate(user.getUsername());
 
             }
 
@@ -0,0 +1,85 @@
+package com.mtmn.smartdoc.service.impl;
+
+import com.mtmn.smartdoc.service.AuthCodeStore;
+import com.mtmn.smartdoc.vo.AuthenticationResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * 内存授权码存储，只适用于单实例部署
+ * 授权码的有效期固定，写入顺序即过期顺序，过期队列只需从队首弹出已过期的条目，
+ * 每次写入和读取的清理开销均摊为 O(1)，不再全表扫描
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/19 09:40
+ */
+@Component
+@ConditionalOnProperty(prefix = "auth.code-store", name = "type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryAuthCodeStore implements AuthCodeStore {
+
+    private final Map<String, Entry> codes = new ConcurrentHashMap<>();
+    private final Queue<Entry> expiryQueue = new ConcurrentLinkedQueue<>();
+    private final LongSupplier nanoClock;
+
+    private record Entry(String code, AuthenticationResponse response, long expiresAtNanos) {
+    }
+
+    public InMemoryAuthCodeStore() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 单调时钟（纳秒），测试时可替换
+     */
+    InMemoryAuthCodeStore(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void put(String code, AuthenticationResponse response, Duration ttl) {
+        long now = nanoClock.getAsLong();
+        Entry entry = new Entry(code, response, now + ttl.toNanos());
+        codes.put(code, entry);
+        expiryQueue.add(entry);
+        evictExpired(now);
+    }
+
+    @Override
+    public Optional<AuthenticationResponse> take(String code) {
+        long now = nanoClock.getAsLong();
+        evictExpired(now);
+        Entry entry = codes.remove(code);
+        if (entry == null || entry.expiresAtNanos() - now <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.response());
+    }
+
+    /**
+     * 当前未过期的授权码数量（含尚未清理的过期条目）
+     */
+    int size() {
+        return codes.size();
+    }
+
+    /**
+     * 从队首弹出已过期的条目；已被取走或被覆盖的授权码只在映射中的条目仍是同一个时才删除
+     */
+    private void evictExpired(long now) {
+        Entry head;
+        while ((head = expiryQueue.peek()) != null && head.expiresAtNanos() - now <= 0) {
+            if (expiryQueue.remove(head)) {
+                codes.remove(head.code(), head);
+            }
+        }
+    }
+}
@@ -3,11 +3,13 @@ package com.mtmn.smartdoc.service.impl;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mtmn.smartdoc.common.ApiResponse;
+import com.mtmn.smartdoc.common.CustomException;
 import com.mtmn.smartdoc.common.IntentResult;
+import com.mtmn.smartdoc.common.KeysetCursor;
 import com.mtmn.smartdoc.common.QueryDecomposeResult;
 import com.mtmn.smartdoc.config.ModelConfig;
-import com.mtmn.smartdoc.config.RagStrategyFactory;
 import com.mtmn.smartdoc.dto.CreateKbRequest;
+import com.mtmn.smartdoc.dto.DocumentListItem;
 import com.mtmn.smartdoc.dto.KnowledgeBaseDTO;
 import com.mtmn.smartdoc.po.DocumentPO;
 import com.mtmn.smartdoc.po.KnowledgeBase;
@@ -19,18 +21,19 @@ import com.mtmn.smartdoc.utils.IntentClassifier;
 import com.mtmn.smartdoc.utils.QueryDecompose;
 import com.mtmn.smartdoc.utils.QueryRewrite;
 import com.mtmn.smartdoc.utils.SseUtil;
+import com.mtmn.smartdoc.vo.CursorPage;
 import com.mtmn.smartdoc.vo.DocumentVO;
-import io.milvus.v2.client.ConnectConfig;
-import io.milvus.v2.client.MilvusClientV2;
-import io.milvus.v2.service.collection.request.DropCollectionReq;
+import com.mtmn.smartdoc.vo.UploadFileResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
@@ -49,25 +52,24 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
 
-
-    @Value("${milvus.uri}")
-    private String milvusUri;
-
     private final KnowledgeBaseRepository knowledgeBaseRepository;
     private final DocumentRepository documentRepository;
     private final ModelConfig modelConfig;
     private final ObjectMapper objectMapper;
     private final DocumentService documentService;
     //    private final MilvusService milvusService;
-    private final MinioService minioService;
+    private final ContentStoreService contentStoreService;
+    private final KnowledgeBaseCleanupService knowledgeBaseCleanupService;
+    private final UserStatisticsService userStatisticsService;
     private final SseUtil sseUtil;
     private final LLMService llmService;
     private final IntentClassifier intentClassifier;
     private final QueryRewrite queryRewrite;
     private final QueryDecompose queryDecompose;
-    private final RagStrategyFactory ragStrategyFactory;
+    private final IndexBuildService indexBuildService;
     private final HiSemRag hiSemRag;
     private final NaiveRag naiveRag;
+    private final ChatAdmissionService chatAdmissionService;
 
     /**
      * 获取用户的知识库列表
@@ -156,10 +158,9 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
      * 1. 校验知识库ID的有效性
      * 2. 检查知识库是否存在
      * 3. 验证用户权限（只有知识库所有者才能删除）
-     * 4. 删除知识库中的所有文档（包括Minio中的文件）
-     * 5. 删除Milvus中的索引集合
-     * 6. 删除数据库中的知识库记录
-     * 7. 使用事务确保数据一致性
+     * 4. 按 knowledge_base_id 索引只查询文档的对象路径，批量释放存储对象引用
+     * 5. 用一条 JPQL 批量删除知识库中的文档记录，再删除知识库记录
+     * 6. 事务提交后在后台删除已无引用的 MinIO 对象和 Milvus 中的索引集合，失败自动重试
      * 
      * @param knowledgeBaseId 要删除的知识库ID
      * @param user 当前登录用户
@@ -189,36 +190,31 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
                 return ApiResponse.error("您没有权限删除此知识库");
             }
 
-            // 删除知识库中的所有文档
-            documentRepository.findAll().stream()
-                    .filter(doc -> Objects.equals(doc.getKnowledgeBaseId(), knowledgeBaseId))
-                    .forEach(doc -> {
-                        // 删除 Minio 中的文档
-                        minioService.deleteFile(doc.getFilePath());
-
-                        // 删除文档表中的记录
-                        documentRepository.delete(doc);
-
-                        log.info("文档从知识库中移除，文档ID：{}", doc.getId());
-                    });
-
-            // TODO 改为 RAGMethodService.deleteIndex()
-            // 删除知识库的索引
-            ConnectConfig connectConfig = ConnectConfig.builder()
-                    .uri(milvusUri)
-                    .build();
+            // 释放文档引用的存储对象，其他知识库仍在使用的相同文件会保留
+            List<String> filePaths = documentRepository.findFilePathsByKnowledgeBaseId(knowledgeBaseId);
+            ContentStoreService.UnreferencedObjects unreferenced = contentStoreService.releaseAll(filePaths);
 
-            MilvusClientV2 milvusClient = new MilvusClientV2(connectConfig);
-            milvusClient.dropCollection(DropCollectionReq.builder().collectionName(getStoreKnowledgeBaseName(knowledgeBase.getName())).build());
-            log.info("删除知识库索引，ID：{}", knowledgeBaseId);
+            // 批量删除文档表中的记录
+            int deletedCount = documentRepository.deleteByKnowledgeBaseId(knowledgeBaseId);
+            userStatisticsService.recordDocuments(user.getId(), -deletedCount);
+            log.info("从知识库中移除 {} 个文档，知识库ID：{}", deletedCount, knowledgeBaseId);
 
             // 删除知识库表中的记录
             knowledgeBaseRepository.delete(knowledgeBase);
 
+            // TODO 改为 RAGMethodService.deleteIndex()
+            // 集合名称依赖当前用户，必须在请求线程中确定
+            String collectionName = getStoreKnowledgeBaseName(knowledgeBase.getName());
+            knowledgeBaseCleanupService.submitAfterCommit(new KnowledgeBaseCleanupService.CleanupTask(
+                    knowledgeBaseId, collectionName, unreferenced.objectNames(), unreferenced.prefixes(),
+                    unreferenced.contentHashes()));
+
             log.info("知识库删除成功，ID：{}", knowledgeBaseId);
             return ApiResponse.success("知识库删除成功", true);
         } catch (Exception e) {
             log.error("删除知识库异常", e);
+            // 返回错误响应而不抛出异常，需要显式回滚，避免引用计数已减少但记录未删除
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return ApiResponse.error("删除知识库失败：" + e.getMessage());
         }
     }
@@ -322,8 +318,8 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
      * 1. 校验知识库ID参数的有效性
      * 2. 检查知识库是否存在于数据库中
      * 3. 验证用户权限（只有知识库所有者才能访问）
-     * 4. 查询知识库下的所有文档，按创建时间倒序排列
-     * 5. 将文档实体转换为VO对象，满足前端展示需求
+     * 4. 查询知识库下的所有文档，按创建时间倒序排列；使用投影只查询列表需要的列，不加载摘要、敏感信息等大字段
+     * 5. 将查询结果转换为VO对象，满足前端展示需求
      * 6. 统一异常处理，确保服务的稳定性
      * 
      * @param knowledgeBaseId 知识库ID
@@ -353,22 +349,12 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
                 return ApiResponse.error("您没有权限访问此知识库的文档");
             }
 
-            // 获取知识库的文档列表
-            List<DocumentPO> documents = documentRepository.findByKnowledgeBaseIdOrderByCreatedAtDesc(knowledgeBaseId);
+            // 获取知识库的文档列表，只查询列表需要的列
+            List<DocumentListItem> documents = documentRepository.findListItemsByKnowledgeBaseId(knowledgeBaseId);
 
             // 将 Document 实体转换为 DocumentVO
             List<DocumentVO> documentVos = documents.stream()
-                    .map(doc -> DocumentVO.builder()
-                            .id(doc.getId())
-                            .title(doc.getTitle())
-                            .fileName(doc.getFileName())
-                            .indexed(doc.getIndexed())
-                            .fileType(doc.getFileType())
-                            .fileSize(doc.getFileSize())
-                            .fileUrl(doc.getFilePath())
-                            .createdAt(doc.getCreatedAt())
-                            .updatedAt(doc.getUpdatedAt())
-                            .build())
+                    .map(this::toDocumentVO)
                     .collect(Collectors.toList());
 
             log.info("成功获取知识库文档列表，知识库ID：{}，文档数量：{}", knowledgeBaseId, documentVos.size());
@@ -379,41 +365,92 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
         }
     }
 
+    /**
+     * 键集分页获取知识库文档列表
+     * 
+     * 实现思路：
+     * 1. 校验知识库是否存在以及用户权限，与不分页的列表接口一致
+     * 2. 解析游标，按 (创建时间, ID) 倒序只查询游标之后的 size + 1 条文档，
+     *    由 (knowledge_base_id, created_at) 索引直接定位，大知识库翻页时不会扫描前面的行
+     * 3. 多出的一条只用于判断是否还有下一页，以本页最后一条文档生成下一页的游标
+     * 
+     * @param knowledgeBaseId 知识库ID
+     * @param user 当前登录用户
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页条数，最多100条
+     * @return 包含一页文档的API响应对象
+     */
+    @Override
+    public ApiResponse<CursorPage<DocumentVO>> listKnowledgeBaseDocsPage(Long knowledgeBaseId, User user,
+                                                                         String cursor, int size) {
+        if (knowledgeBaseId == null) {
+            return ApiResponse.error("知识库ID不能为空");
+        }
+
+        try {
+            Optional<KnowledgeBase> knowledgeBaseOpt = knowledgeBaseRepository.findById(knowledgeBaseId);
+            if (knowledgeBaseOpt.isEmpty()) {
+                return ApiResponse.error("知识库不存在");
+            }
+            if (!Objects.equals(knowledgeBaseOpt.get().getUser().getId(), user.getId())) {
+                return ApiResponse.error("您没有权限访问此知识库的文档");
+            }
+
+            int pageSize = CursorPage.clampSize(size);
+            KeysetCursor position = KeysetCursor.decode(cursor);
+            Pageable limit = PageRequest.of(0, pageSize + 1);
+            List<DocumentListItem> rows = position == null
+                    ? documentRepository.findKnowledgeBasePage(knowledgeBaseId, limit)
+                    : documentRepository.findKnowledgeBasePageAfter(knowledgeBaseId, position.createdAt(), position.id(), limit);
+
+            return ApiResponse.success(CursorPage.of(rows, pageSize, DocumentListItem::createdAt, DocumentListItem::id,
+                    this::toDocumentVO));
+        } catch (CustomException e) {
+            return ApiResponse.error(e.getCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("分页获取知识库文档列表失败", e);
+            return ApiResponse.error("获取知识库文档列表失败：" + e.getMessage());
+        }
+    }
+
+    private DocumentVO toDocumentVO(DocumentListItem doc) {
+        return DocumentVO.builder()
+                .id(doc.id())
+                .title(doc.title())
+                .fileName(doc.fileName())
+                .indexed(doc.indexed())
+                .fileType(doc.fileType())
+                .fileSize(doc.fileSize())
+                .fileUrl(doc.filePath())
+                .createdAt(doc.createdAt())
+                .updatedAt(doc.updatedAt())
+                .build();
+    }
+
     /**
      * 批量向指定知识库添加文档
      *
      * 实现思路：
-     * 1. 遍历传入的文件数组和标题数组
-     * 2. 对每个非空文件调用documentService.uploadDocument进行上传
-     * 3. 记录每个文档的上传结果（成功/失败）
-     * 4. 返回包含所有上传结果的列表
-     * 5. 异常处理确保批量操作的稳定性
+     * 1. 调用documentService.uploadDocuments并行上传所有非空文件，并批量保存文档记录
+     * 2. 记录每个文档的上传结果（成功/失败）和耗时
+     * 3. 返回包含所有上传结果的列表
+     * 4. 异常处理确保批量操作的稳定性
      * 
      * @param id     知识库ID
      * @param user   当前登录用户
      * @param files  要上传的文件列表
      * @param titles 与 files 数组一一对应的文档标题列表
-     * @return 每个布尔值表示对应文档的上传结果（true：成功，false：失败）
+     * @return 每个非空文件的上传结果，包含是否成功、文档ID和耗时
      */
     @Override
-    public ApiResponse<List<Boolean>> addDocs(Long id, User user, MultipartFile[] files, String[] titles) {
-
-        List<Boolean> uploaded = new ArrayList<>();
+    public ApiResponse<List<UploadFileResult>> addDocs(Long id, User user, MultipartFile[] files, String[] titles) {
         try {
-            for (int i = 0; i < files.length; i++) {
-                if (!files[i].isEmpty()) {
-                    DocumentPO document = documentService.uploadDocument(files[i], titles[i], user, id);
-
-                    if (null != document) {
-                        uploaded.add(true);
-
-                        log.info("用户 {} 上传了文档 {}", user.getUsername(), titles[i]);
-                    } else {
-                        uploaded.add(false);
-
-                        log.info("用户 {} 上传文档 {} 失败", user.getUsername(), titles[i]);
-                    }
-
+            List<UploadFileResult> uploaded = documentService.uploadDocuments(files, titles, user, id);
+            for (UploadFileResult result : uploaded) {
+                if (result.isSuccess()) {
+                    log.info("用户 {} 上传了文档 {}，耗时 {} ms", user.getUsername(), result.getTitle(), result.getElapsedMs());
+                } else {
+                    log.info("用户 {} 上传文档 {} 失败: {}", user.getUsername(), result.getTitle(), result.getMessage());
                 }
             }
             return ApiResponse.success("文档批量上传成功", uploaded);
@@ -427,25 +464,17 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
      * 构建知识库索引
      * 
      * 实现思路：
-     * 1. 根据知识库ID查询知识库信息，获取嵌入模型和RAG方法配置
+     * 1. 根据知识库ID查询知识库信息
      * 2. 从文档库中查询该知识库下未被索引的文档
-     * 3. 解析索引参数JSON，合并嵌入模型名称到参数中
-     * 4. 使用RAG策略工厂创建对应的RAG策略对象
-     * 5. 调用RAG策略的buildIndex方法构建索引
-     * 6. 更新成功构建索引的文档状态为已索引
-     * 7. 返回构建结果的响应
+     * 3. 交给索引构建服务：按知识库配置的RAG策略构建索引，成功的文档批量标记为已索引，
+     *    可重试的失败文档在后台重试
+     * 4. 返回成功、失败、重试和因正在构建而跳过的文档数
      * 
      * @param id 知识库ID字符串
      * @return 索引构建结果的API响应对象
      */
     @Override
     public ApiResponse<String> buildIndex(String id) {
-        /*
-        根据知识库 id 从知识库查询信息 embedding index
-        根据知识库 id 从文档库中查询知识库的文档（没有被索引的）
-        根据 embedding 模型和 rag 方法开始构建索引
-        获取文档内容，文档切分，向量库构建
-         */
         Optional<KnowledgeBase> knowledgeBaseOpt = knowledgeBaseRepository.findById(Long.valueOf(id));
 
         if (knowledgeBaseOpt.isEmpty()) {
@@ -454,28 +483,7 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
 
         KnowledgeBase knowledgeBase = knowledgeBaseOpt.get();
 
-        String kbName = knowledgeBase.getName();
-
-        String ragMethodName = knowledgeBase.getRag();
-
-        String embeddingModelName = knowledgeBase.getEmbeddingModel();
-
-        String indexParam = knowledgeBase.getIndexParam();
-
-        Map<String, Object> params = new HashMap<>();
-        if (StringUtils.hasText(indexParam)) {
-            try {
-                params.putAll(objectMapper.readValue(indexParam, new TypeReference<Map<String, Object>>() {
-                }));
-            } catch (Exception e) {
-                log.error("解析索引参数JSON失败", e);
-            }
-        }
-
         try {
-            // 使用 ragStrategyFactory 创建 RAG 策略对象
-            BaseRag rag = ragStrategyFactory.getStrategy(ragMethodName);
-
             // 查询未被索引的文档
             List<DocumentPO> documentPoList = documentRepository.findByKnowledgeBaseIdOrderByCreatedAtDesc(Long.valueOf(id))
                     .stream()
@@ -486,22 +494,14 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
                 return ApiResponse.success("没有未被索引的文档");
             }
 
-            //Integer chunkSize, Boolean generateAbstract, String embeddingModelName
-            params.put("embeddingModelName", embeddingModelName);
+            IndexBuildService.BuildSummary summary = indexBuildService.build(knowledgeBase, documentPoList);
 
-            List<Boolean> success = rag.buildIndex(kbName, documentPoList, params);
-
-            for (int i = 0; i < success.size(); i++) {
-                // TODO 没成功的现在没有提示
-                if (success.get(i)) {
-                    // 更新文档的索引状态
-                    DocumentPO documentPo = documentPoList.get(i);
-                    documentPo.setIndexed(true);
-                    documentRepository.save(documentPo);
-                }
+            String skipped = summary.skipped() > 0 ? "，" + summary.skipped() + " 个文档正在构建中已跳过" : "";
+            if (summary.failed() == 0) {
+                return ApiResponse.success("索引构建成功：" + summary.succeeded() + " 个文档" + skipped);
             }
-
-            return ApiResponse.success("索引构建成功：");
+            return ApiResponse.success(String.format("索引构建完成：成功 %d 个，失败 %d 个，其中 %d 个将在后台重试%s",
+                    summary.succeeded(), summary.failed(), summary.retried(), skipped));
         } catch (Exception e) {
             log.error("索引构建失败", e);
             return ApiResponse.error("索引构建失败：" + e.getMessage());
@@ -559,7 +559,7 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
      * 1. 验证知识库ID的有效性，检查知识库是否存在
      * 2. 根据意图识别参数判断是否需要进行知识检索
      * 3. 如果启用查询重写，对用户问题进行优化处理
-     * 4. 设置查询参数（topk等）并调用朴素RAG策略
+     * 4. 设置查询参数（topk等），经过准入控制（限流、公平排队）后调用朴素RAG策略
      * 5. 返回流式响应，支持实时对话体验
      * 
      * @param id 知识库ID
@@ -604,7 +604,8 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
         params.put("topk", topk);
 
         //  TODO 问题分解，然后把问题列表传入
-        return naiveRag.chat(knowledgeBase, question, params);
+        String finalQuestion = question;
+        return chatAdmissionService.admit(knowledgeBase, () -> naiveRag.chat(knowledgeBase, finalQuestion, params));
     }
 
     /**
@@ -614,7 +615,7 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
      * 1. 验证知识库ID的有效性，检查知识库是否存在
      * 2. 根据意图识别参数判断是否需要进行知识检索，与naiveQa逻辑相反
      * 3. 如果启用查询重写，对用户问题进行优化处理
-     * 4. 设置查询参数（maxRes等）并调用HiSem RAG策略
+     * 4. 设置查询参数（maxRes等），经过准入控制（限流、公平排队）后调用HiSem RAG策略
      * 5. 返回流式响应，支持更高质量的对话体验
      * 
      * @param id 知识库ID
@@ -659,7 +660,8 @@ public class KnowledgeBaseServiceImpl implements KnowledgeBaseService {
         params.put("maxRes", maxRes);
 
         //  TODO 问题分解，然后把问题列表传入
-        return hiSemRag.chat(knowledgeBase, question, params);
+        String finalQuestion = question;
+        return chatAdmissionService.admit(knowledgeBase, () -> hiSemRag.chat(knowledgeBase, finalQuestion, params));
     }
 
     /**
@@ -0,0 +1,58 @@
+package com.mtmn.smartdoc.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mtmn.smartdoc.common.CustomException;
+import com.mtmn.smartdoc.service.AuthCodeStore;
+import com.mtmn.smartdoc.vo.AuthenticationResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Redis 授权码存储，多个实例共享授权码
+ * 过期由 Redis 的键过期机制处理，取出使用 GETDEL 保证一次性使用（需要 Redis 6.2 及以上）
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/19 10:10
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "auth.code-store", name = "type", havingValue = "redis")
+public class RedisAuthCodeStore implements AuthCodeStore {
+
+    private static final String KEY_PREFIX = "smartdoc:auth-code:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void put(String code, AuthenticationResponse response, Duration ttl) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + code, objectMapper.writeValueAsString(response), ttl);
+        } catch (JsonProcessingException e) {
+            throw new CustomException(500, "保存授权码失败");
+        }
+    }
+
+    @Override
+    public Optional<AuthenticationResponse> take(String code) {
+        String value = redisTemplate.opsForValue().getAndDelete(KEY_PREFIX + code);
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(value, AuthenticationResponse.class));
+        } catch (JsonProcessingException e) {
+            log.warn("授权码数据格式错误: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.mtmn.smartdoc.service.impl;
 
 import com.mtmn.smartdoc.po.UserActivity;
 import com.mtmn.smartdoc.repository.UserActivityRepository;
+import com.mtmn.smartdoc.service.ActivityEventBus;
 import com.mtmn.smartdoc.service.UserActivityService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
@@ -22,6 +23,7 @@ import java.util.List;
 public class UserActivityServiceImpl implements UserActivityService {
 
     private final UserActivityRepository userActivityRepository;
+    private final ActivityEventBus activityEventBus;
     
     /**
      * 记录用户活动
@@ -30,20 +32,18 @@ public class UserActivityServiceImpl implements UserActivityService {
      * 1. 接收用户活动的详细信息参数
      * 2. 使用Builder模式构建UserActivity实体对象
      * 3. 设置当前时间作为活动创建时间
-     * 4. 将活动记录保存到数据库
-     * 5. 记录操作日志便于问题追踪
-     * 6. 返回保存后的活动实体对象
+     * 4. 发布到活动事件总线，由后台线程批量写入数据库，不阻塞当前请求
+     * 5. 未提供文档名称时，写入时按文档ID取文档标题
      * 
      * @param userId 用户ID
      * @param activityType 活动类型（如SUMMARY、KEYWORDS等）
      * @param documentId 关联的文档ID
      * @param documentName 文档名称
      * @param description 活动描述
-     * @return 保存后的用户活动实体对象
      */
     @Override
-    public UserActivity recordActivity(Long userId, String activityType, Long documentId, 
-                                    String documentName, String description) {
+    public void recordActivity(Long userId, String activityType, Long documentId, 
+                               String documentName, String description) {
         log.info("记录用户活动: userId={}, activityType={}, documentId={}", userId, activityType, documentId);
         
         UserActivity activity = UserActivity.builder()
@@ -55,7 +55,7 @@ public class UserActivityServiceImpl implements UserActivityService {
                 .createdAt(LocalDateTime.now())
                 .build();
         
-        return userActivityRepository.save(activity);
+        activityEventBus.publish(activity);
     }
 
     /**
@@ -70,11 +70,10 @@ public class UserActivityServiceImpl implements UserActivityService {
      * @param userId 用户ID
      * @param documentId 文档ID
      * @param documentName 文档名称
-     * @return 保存后的用户活动实体对象
      */
     @Override
-    public UserActivity recordSummaryAnalysis(Long userId, Long documentId, String documentName) {
-        return recordActivity(
+    public void recordSummaryAnalysis(Long userId, Long documentId, String documentName) {
+        recordActivity(
             userId, 
             UserActivity.ActivityType.SUMMARY.name(), 
             documentId, 
@@ -95,11 +94,10 @@ public class UserActivityServiceImpl implements UserActivityService {
      * @param userId 用户ID
      * @param documentId 文档ID
      * @param documentName 文档名称
-     * @return 保存后的用户活动实体对象
      */
     @Override
-    public UserActivity recordKeywordsAnalysis(Long userId, Long documentId, String documentName) {
-        return recordActivity(
+    public void recordKeywordsAnalysis(Long userId, Long documentId, String documentName) {
+        recordActivity(
             userId, 
             UserActivity.ActivityType.KEYWORDS.name(), 
             documentId, 
@@ -120,11 +118,10 @@ public class UserActivityServiceImpl implements UserActivityService {
      * @param userId 用户ID
      * @param documentId 文档ID
      * @param documentName 文档名称
-     * @return 保存后的用户活动实体对象
      */
     @Override
-    public UserActivity recordSecurityAnalysis(Long userId, Long documentId, String documentName) {
-        return recordActivity(
+    public void recordSecurityAnalysis(Long userId, Long documentId, String documentName) {
+        recordActivity(
             userId, 
             UserActivity.ActivityType.SECURITY.name(), 
             documentId, 
@@ -145,11 +142,10 @@ public class UserActivityServiceImpl implements UserActivityService {
      * @param userId 用户ID
      * @param documentId 文档ID
      * @param documentName 文档名称
-     * @return 保存后的用户活动实体对象
      */
     @Override
-    public UserActivity recordPolishAnalysis(Long userId, Long documentId, String documentName) {
-        return recordActivity(
+    public void recordPolishAnalysis(Long userId, Long documentId, String documentName) {
+        recordActivity(
             userId, 
             UserActivity.ActivityType.POLISH.name(), 
             documentId, 
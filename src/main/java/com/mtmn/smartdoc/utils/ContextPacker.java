@@ -0,0 +1,218 @@
+package com.mtmn.smartdoc.utils;
+
+import com.mtmn.smartdoc.config.ContextConfig;
+import com.mtmn.smartdoc.config.ModelConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 检索上下文组装工具
+ * 对检索到的片段去除近似重复，并按 token 预算填充提示词上下文
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/12 09:30
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class ContextPacker {
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ContextConfig contextConfig;
+    private final ModelConfig modelConfig;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 组装结果
+     *
+     * @param context          拼接好的上下文文本
+     * @param chunks           最终进入上下文的片段
+     * @param originalTokens   去重和截断前所有片段的估算 token 数
+     * @param packedTokens     进入上下文的片段估算 token 数
+     * @param duplicateCount   因近似重复被移除的片段数
+     * @param overBudgetCount  因超出预算被丢弃的片段数
+     */
+    public record PackedContext(String context, List<String> chunks, int originalTokens, int packedTokens,
+                                int duplicateCount, int overBudgetCount) {
+
+        public int tokensSaved() {
+            return originalTokens - packedTokens;
+        }
+    }
+
+    /**
+     * 按当前激活的大语言模型预算组装上下文
+     *
+     * 实现思路：
+     * 1. 从配置中取得当前模型的 token 预算和去重阈值
+     * 2. 调用 {@link #pack(List, int, int)} 完成去重和预算填充
+     * 3. 记录本次请求节省的 token 数，便于观察去重与预算的效果
+     *
+     * @param rankedChunks 按相关度从高到低排列的检索片段
+     * @return 组装结果
+     */
+    public PackedContext pack(List<String> rankedChunks) {
+        String modelId = modelConfig.getActiveLlm();
+        PackedContext packed = pack(rankedChunks, contextConfig.getMaxTokens(modelId),
+                contextConfig.getDuplicateHammingDistance());
+
+        meterRegistry.summary("smartdoc.rag.context.tokens.saved").record(packed.tokensSaved());
+        log.info("[上下文组装] 模型: {}, 片段: {} -> {}, 重复: {}, 超出预算: {}, token: {} -> {}, 节省: {}",
+                modelId, rankedChunks.size(), packed.chunks().size(), packed.duplicateCount(),
+                packed.overBudgetCount(), packed.originalTokens(), packed.packedTokens(), packed.tokensSaved());
+        return packed;
+    }
+
+    /**
+     * 组装上下文
+     *
+     * 实现思路：
+     * 1. 按相关度顺序遍历片段，先用文本包含关系和 SimHash 海明距离剔除近似重复片段
+     * 2. 剩余片段依次尝试放入预算，放不下的跳过，继续尝试后面较短的片段
+     * 3. 如果第一个片段本身就超过预算，则按预算截断后放入，保证上下文不为空
+     * 4. 以【片段N】格式拼接上下文，编号与前端展示的出处顺序一致
+     *
+     * @param rankedChunks         按相关度从高到低排列的检索片段
+     * @param maxTokens            上下文 token 预算
+     * @param maxHammingDistance   视为近似重复的最大海明距离
+     * @return 组装结果
+     */
+    public static PackedContext pack(List<String> rankedChunks, int maxTokens, int maxHammingDistance) {
+        List<String> selected = new ArrayList<>();
+        List<Long> selectedHashes = new ArrayList<>();
+        int originalTokens = 0;
+        int packedTokens = 0;
+        int duplicateCount = 0;
+        int overBudgetCount = 0;
+
+        for (String chunk : rankedChunks) {
+            int tokens = estimateTokens(chunk);
+            originalTokens += tokens;
+
+            long hash = simHash(chunk);
+            if (isDuplicate(chunk, hash, selected, selectedHashes, maxHammingDistance)) {
+                duplicateCount++;
+                continue;
+            }
+
+            if (packedTokens + tokens > maxTokens) {
+                if (!selected.isEmpty()) {
+                    overBudgetCount++;
+                    continue;
+                }
+                chunk = truncateToTokens(chunk, maxTokens);
+                tokens = estimateTokens(chunk);
+            }
+
+            selected.add(chunk);
+            selectedHashes.add(hash);
+            packedTokens += tokens;
+        }
+
+        StringBuilder context = new StringBuilder(packedTokens * 2);
+        for (int i = 0; i < selected.size(); i++) {
+            context.append("【片段").append(i + 1).append("】\n").append(selected.get(i)).append("\n\n");
+        }
+
+        return new PackedContext(context.toString(), selected, originalTokens, packedTokens, duplicateCount, overBudgetCount);
+    }
+
+    /**
+     * 估算文本的 token 数
+     * 中日韩字符大约每个字符一个 token，其余字符大约每4个字符一个 token
+     *
+     * @param text 文本
+     * @return 估算的 token 数
+     */
+    public static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCjk(text.charAt(i))) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 计算文本的 64 位 SimHash
+     * 以字符 3-gram 作为特征，不依赖分词，对中文和英文都适用
+     *
+     * @param text 文本
+     * @return SimHash 指纹
+     */
+    public static long simHash(String text) {
+        int[] weights = new int[64];
+        int shingles = Math.max(1, text.length() - SHINGLE_SIZE + 1);
+        for (int start = 0; start < shingles; start++) {
+            long hash = fnv1a64(text, start, Math.min(text.length(), start + SHINGLE_SIZE));
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) == 1L ? 1 : -1;
+            }
+        }
+
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    private static boolean isDuplicate(String chunk, long hash, List<String> selected, List<Long> selectedHashes,
+                                       int maxHammingDistance) {
+        for (int i = 0; i < selected.size(); i++) {
+            if (Long.bitCount(hash ^ selectedHashes.get(i)) <= maxHammingDistance
+                    || selected.get(i).contains(chunk)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String truncateToTokens(String text, int maxTokens) {
+        int tokens = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCjk(text.charAt(i))) {
+                tokens++;
+            } else if (other++ % 4 == 0) {
+                tokens++;
+            }
+            if (tokens > maxTokens) {
+                return text.substring(0, i);
+            }
+        }
+        return text;
+    }
+
+    private static long fnv1a64(String text, int from, int to) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = from; i < to; i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
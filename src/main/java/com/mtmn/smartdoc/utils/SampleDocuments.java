@@ -0,0 +1,172 @@
+package com.mtmn.smartdoc.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 预热用的最小示例文档
+ * 覆盖前端允许上传的格式（pdf、doc、docx、xls、xlsx、ppt、pptx、txt、md），
+ * 在内存中生成，不依赖任何资源文件
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/17 09:30
+ */
+public final class SampleDocuments {
+
+    private static final String TEXT = "SmartDoc warm up 预热文档";
+
+    private static final String CONTENT_TYPES_NS = "http://schemas.openxmlformats.org/package/2006/content-types";
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String OFFICE_DOCUMENT_REL =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument";
+
+    private SampleDocuments() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * 示例文档
+     *
+     * @param fileName 文件名，扩展名用于类型检测
+     * @param content  文件内容
+     */
+    public record Sample(String fileName, byte[] content) {
+    }
+
+    /**
+     * 生成所有格式的示例文档
+     *
+     * @return 示例文档列表
+     */
+    public static List<Sample> all() {
+        List<Sample> samples = new ArrayList<>();
+        samples.add(new Sample("warmup.txt", TEXT.getBytes(StandardCharsets.UTF_8)));
+        samples.add(new Sample("warmup.md", ("# 标题\n\n" + TEXT + "\n").getBytes(StandardCharsets.UTF_8)));
+        samples.add(new Sample("warmup.pdf", pdf()));
+        samples.add(new Sample("warmup.docx", docx()));
+        samples.add(new Sample("warmup.xlsx", xlsx()));
+        samples.add(new Sample("warmup.pptx", pptx()));
+        // doc/xls/ppt 共用 OLE2 容器，只有文件头的空容器足以加载 OLE2 检测器和 Office 解析器
+        samples.add(new Sample("warmup.doc", ole2Header()));
+        return samples;
+    }
+
+    /**
+     * 单页 PDF，交叉引用表的偏移量按实际内容计算
+     */
+    static byte[] pdf() {
+        String stream = "BT /F1 12 Tf 20 100 Td (SmartDoc warm up) Tj ET";
+        String[] objects = {
+                "<< /Type /Catalog /Pages 2 0 R >>",
+                "<< /Type /Pages /Kids [3 0 R] /Count 1 >>",
+                "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 200 200] /Contents 4 0 R "
+                        + "/Resources << /Font << /F1 5 0 R >> >> >>",
+                "<< /Length " + stream.length() + " >>\nstream\n" + stream + "\nendstream",
+                "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>"
+        };
+
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        int[] offsets = new int[objects.length];
+        for (int i = 0; i < objects.length; i++) {
+            offsets[i] = pdf.length();
+            pdf.append(i + 1).append(" 0 obj\n").append(objects[i]).append("\nendobj\n");
+        }
+        int xref = pdf.length();
+        pdf.append("xref\n0 ").append(objects.length + 1).append("\n0000000000 65535 f \n");
+        for (int offset : offsets) {
+            pdf.append(String.format("%010d 00000 n \n", offset));
+        }
+        pdf.append("trailer\n<< /Size ").append(objects.length + 1).append(" /Root 1 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        return pdf.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] docx() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("[Content_Types].xml", contentTypes("/word/document.xml",
+                "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml"));
+        entries.put("_rels/.rels", relationships(OFFICE_DOCUMENT_REL, "word/document.xml"));
+        entries.put("word/document.xml",
+                "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\">"
+                        + "<w:body><w:p><w:r><w:t>" + TEXT + "</w:t></w:r></w:p></w:body></w:document>");
+        return zip(entries);
+    }
+
+    static byte[] xlsx() {
+        String mainNs = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("[Content_Types].xml", "<Types xmlns=\"" + CONTENT_TYPES_NS + "\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" "
+                + "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/worksheets/sheet1.xml\" "
+                + "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                + "</Types>");
+        entries.put("_rels/.rels", relationships(OFFICE_DOCUMENT_REL, "xl/workbook.xml"));
+        entries.put("xl/workbook.xml", "<workbook xmlns=\"" + mainNs + "\" "
+                + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                + "<sheets><sheet name=\"Sheet1\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>");
+        entries.put("xl/_rels/workbook.xml.rels", relationships(
+                "http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet", "worksheets/sheet1.xml"));
+        entries.put("xl/worksheets/sheet1.xml", "<worksheet xmlns=\"" + mainNs + "\"><sheetData>"
+                + "<row r=\"1\"><c r=\"A1\" t=\"inlineStr\"><is><t>" + TEXT + "</t></is></c></row>"
+                + "</sheetData></worksheet>");
+        return zip(entries);
+    }
+
+    static byte[] pptx() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("[Content_Types].xml", contentTypes("/ppt/presentation.xml",
+                "application/vnd.openxmlformats-officedocument.presentationml.presentation.main+xml"));
+        entries.put("_rels/.rels", relationships(OFFICE_DOCUMENT_REL, "ppt/presentation.xml"));
+        entries.put("ppt/presentation.xml",
+                "<p:presentation xmlns:p=\"http://schemas.openxmlformats.org/presentationml/2006/main\"/>");
+        return zip(entries);
+    }
+
+    static byte[] ole2Header() {
+        byte[] header = new byte[512];
+        byte[] magic = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+        System.arraycopy(magic, 0, header, 0, magic.length);
+        return header;
+    }
+
+    private static String contentTypes(String partName, String contentType) {
+        return "<Types xmlns=\"" + CONTENT_TYPES_NS + "\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"" + partName + "\" ContentType=\"" + contentType + "\"/>"
+                + "</Types>";
+    }
+
+    private static String relationships(String type, String target) {
+        return "<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + type + "\" Target=\"" + target + "\"/>"
+                + "</Relationships>";
+    }
+
+    private static byte[] zip(Map<String, String> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>" + entry.getValue())
+                        .getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -1,17 +1,30 @@
 package com.mtmn.smartdoc.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mtmn.smartdoc.common.StreamCancellation;
+import com.mtmn.smartdoc.config.ChatStreamConfig;
 import com.mtmn.smartdoc.service.LLMService;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author charmingdaidai
@@ -22,12 +35,27 @@ import java.util.*;
 @Log4j2
 @Component
 public class SseUtil {
+
+    /**
+     * 状态类SSE消息的对象类型
+     */
+    public static final String STATUS_OBJECT = "chat.completion.status";
+
+    private static final String STATUS_MARKER = "\"" + STATUS_OBJECT + "\"";
+    private static final Pattern STATUS_PATTERN = Pattern.compile("\"status\":\"(\\w+)\"");
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Autowired
     private LLMService llmService;
 
+    @Autowired
+    private ChatStreamConfig chatStreamConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * 构建SSE消息响应格式
      *
@@ -65,6 +93,43 @@ public class SseUtil {
         }
     }
 
+    /**
+     * 构建状态类SSE消息，例如排队（queued）、繁忙（busy）
+     * 前端只解析 docs 和 choices 字段，状态消息不会混入回答内容
+     *
+     * @param status  状态标识
+     * @param message 状态说明
+     * @return 格式化的SSE消息 Json字符串
+     */
+    public String buildStatusSseMessage(String status, String message) {
+        try {
+            Map<String, Object> event = new HashMap<>();
+            event.put("id", "chat" + UUID.randomUUID());
+            event.put("object", STATUS_OBJECT);
+            event.put("status", status);
+            event.put("message", message);
+            return objectMapper.writeValueAsString(event);
+        } catch (Exception e) {
+            log.error("构建SSE状态消息失败", e);
+            return "data: {\"error\":\"构建消息失败\"}\n\n";
+        }
+    }
+
+    /**
+     * 取出状态类SSE消息的状态标识
+     * 回答片段只做一次字符串查找，不解析 JSON
+     *
+     * @param message SSE消息
+     * @return 状态标识（如 queued、busy），不是状态消息时返回 null
+     */
+    public static String statusOf(String message) {
+        if (message == null || !message.contains(STATUS_MARKER)) {
+            return null;
+        }
+        Matcher matcher = STATUS_PATTERN.matcher(message);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
     /**
      * 创建包含消息的SSE流
      *
@@ -84,46 +149,116 @@ public class SseUtil {
     /**
      * 处理流式聊天响应
      *
+     * 实现思路：
+     * 1. 为本次请求创建取消句柄，并基于该句柄创建可中断的流式聊天模型
+     * 2. 使用Flux.create桥接模型回调，下游取消订阅（如用户关闭页面）时取消句柄，关闭上游HTTP流
+     * 3. 注册最长生成时间的定时器，超时后同样中断上游并结束当前流
+     * 4. 取消之后仍然到达的片段只计数不再推送，用于观察中断是否及时生效
+     * 5. 记录中断次数、中断前已推送的片段数以及正常完成时的输出token数；
+     *    模型只在流正常结束时返回token用量，中断的流拿不到用量，因此中断相关的指标统计的是片段（chunk）数而不是token数
+     *
      * @param prompt      提示词
      * @param docContents 检索到的文档内容列表（可以为null）
      * @return 格式化的SSE消息流
      */
     public Flux<String> handleStreamingChatResponse(String prompt, List<String> docContents) {
-        // 1. 创建流式聊天模型
-        OpenAiStreamingChatModel streamingChatModel = llmService.createStreamingChatModel(null);
+        return Flux.create(sink -> {
+            // 1. 创建取消句柄和可取消的流式聊天模型
+            StreamCancellation cancellation = new StreamCancellation();
+            OpenAiStreamingChatModel streamingChatModel = llmService.createStreamingChatModel(null, cancellation);
+            AtomicInteger partialCount = new AtomicInteger();
 
-        // 2. 创建一个只允许单订阅者、带缓冲的 Sink
-        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+            // 2. 下游取消订阅时中断上游 LLM 流
+            sink.onCancel(() -> {
+                if (cancellation.cancel()) {
+                    recordAbort("client", partialCount.get());
+                    log.info("客户端已断开，中断 LLM 流式生成，已生成片段数: {}", partialCount.get());
+                }
+            });
 
-        // 3. 如果前面检索到的文档非空，先把 docs 按照 SSE 消息格式推给前端
-        if (docContents != null && !docContents.isEmpty()) {
-            sink.tryEmitNext(buildJsonSseMessage("", docContents));
-        }
+            // 3. 超过最长生成时间后主动中断
+            Duration maxGenerationTime = chatStreamConfig.getMaxGenerationTime();
+            Disposable deadline = Schedulers.parallel().schedule(() -> {
+                if (cancellation.cancel()) {
+                    recordAbort("timeout", partialCount.get());
+                    log.warn("LLM 生成超过最长时间 {}，已中断，已生成片段数: {}", maxGenerationTime, partialCount.get());
+                    sink.next(buildJsonSseMessage("\\n\\n（回答超过最长生成时间，已停止生成）", null));
+                    sink.complete();
+                }
+            }, maxGenerationTime.toMillis(), TimeUnit.MILLISECONDS);
+            sink.onDispose(deadline);
 
-        // 4. 调用流式聊天模型接口，传入 prompt 和 自定义回调 Handler
-        streamingChatModel.chat(prompt, new StreamingChatResponseHandler() {
-            @Override
-            public void onPartialResponse(String partialResponse) {
-                // 模型每生成一小段文本，就会触发一次 onPartialResponse 回调
-                // 先把里边的双引号、换行做转义，然后构造 JSON 片段
-                String escapedContent = partialResponse.replace("\"", "\\\"").replace("\n", "\\n");
-                sink.tryEmitNext(buildJsonSseMessage(escapedContent, null));
+            // 4. 如果前面检索到的文档非空，先把 docs 按照 SSE 消息格式推给前端
+            if (docContents != null && !docContents.isEmpty()) {
+                sink.next(buildJsonSseMessage("", docContents));
             }
 
-            @Override
-            public void onCompleteResponse(ChatResponse completeResponse) {
-                // 当模型整次对话生成完毕后，触发 onCompleteResponse
-                sink.tryEmitComplete(); // 标记当前 Sink 的 Flux 流结束
-            }
+            // 5. 调用流式聊天模型接口，传入 prompt 和 自定义回调 Handler
+            streamingChatModel.chat(prompt, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    if (cancellation.isCancelled()) {
+                        // 取消后仍到达的片段，说明上游尚未完全停止
+                        Counter.builder("smartdoc.llm.stream.late.chunks")
+                                .description("取消后仍到达的流式片段数（不是token数）")
+                                .baseUnit("chunks")
+                                .register(meterRegistry)
+                                .increment();
+                        return;
+                    }
+                    partialCount.incrementAndGet();
+                    // 模型每生成一小段文本，就会触发一次 onPartialResponse 回调
+                    // 先把里边的双引号、换行做转义，然后构造 JSON 片段
+                    String escapedContent = partialResponse.replace("\"", "\\\"").replace("\n", "\\n");
+                    sink.next(buildJsonSseMessage(escapedContent, null));
+                }
 
-            @Override
-            public void onError(Throwable error) {
-                log.error("聊天响应处理出错", error);
-                sink.tryEmitError(error); // 把异常推给下游，Flux 会触发 onError
-            }
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    if (cancellation.isCancelled()) {
+                        return;
+                    }
+                    deadline.dispose();
+                    TokenUsage tokenUsage = completeResponse.tokenUsage();
+                    if (tokenUsage != null && tokenUsage.outputTokenCount() != null) {
+                        DistributionSummary.builder("smartdoc.llm.stream.output.tokens")
+                                .description("正常完成的流式回答由模型返回的输出token数")
+                                .baseUnit("tokens")
+                                .register(meterRegistry)
+                                .record(tokenUsage.outputTokenCount());
+                    }
+                    // 当模型整次对话生成完毕后，触发 onCompleteResponse
+                    sink.complete(); // 标记当前 Flux 流结束
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (cancellation.isCancelled()) {
+                        // 主动关闭响应体导致的读取异常，属于预期行为
+                        log.debug("LLM 流已中断: {}", error.getMessage());
+                        return;
+                    }
+                    deadline.dispose();
+                    log.error("聊天响应处理出错", error);
+                    sink.error(error); // 把异常推给下游，Flux 会触发 onError
+                }
+            });
         });
+    }
 
-        // 5. 返回这个 Sink 对应的 Flux，供外层（Controller）订阅
-        return sink.asFlux();
+    /**
+     * 记录一次 LLM 流中断
+     *
+     * @param reason       中断原因：client（客户端断开）或 timeout（超过最长生成时间）
+     * @param partialCount 中断前已推送的片段数，模型不返回中断流的token用量，这里统计的是片段数
+     */
+    private void recordAbort(String reason, int partialCount) {
+        meterRegistry.counter("smartdoc.llm.stream.aborts", "reason", reason).increment();
+        DistributionSummary.builder("smartdoc.llm.stream.abort.chunks")
+                .description("中断前已推送的流式片段数（不是token数）")
+                .baseUnit("chunks")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .record(partialCount);
     }
-}
\ No newline at end of file
+}
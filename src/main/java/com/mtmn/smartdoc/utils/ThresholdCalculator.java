@@ -2,13 +2,13 @@ package com.mtmn.smartdoc.utils;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.DoubleSummaryStatistics;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * 自适应阈值计算工具
  * 基于统计指标和安全机制计算最优阈值
- * 
+ *
  * @author charmingdaidai
  * @version 1.0
  * @date 2025/5/27 09:42
@@ -23,7 +23,7 @@ public final class ThresholdCalculator {
 
     /**
      * 计算自适应阈值
-     * 
+     *
      * @param similarities 相似度列表
      * @param level 层级
      * @param kMax 最大保留节点数
@@ -32,139 +32,262 @@ public final class ThresholdCalculator {
      * @param kMin 最小保留节点数
      * @return 计算得到的阈值
      */
-    public static double calculateAdaptiveThreshold(List<Double> similarities, int level, int kMax, 
+    public static double calculateAdaptiveThreshold(List<Double> similarities, int level, int kMax,
                                                    double beta, double gamma, int kMin) {
         if (similarities == null || similarities.isEmpty()) {
             return 0.0;
         }
 
-        log.debug("层级 {} 的相似度数组: {}", level, similarities);
-
-        // 一次性计算统计量
-        Statistics stats = calculateStatistics(similarities);
-        
-        // 计算原始阈值
-        double rawThreshold = calculateRawThreshold(stats, beta, gamma);
-        
-        // 应用安全机制
-        List<Double> sortedSimilarities = getSortedSimilarities(similarities);
-        double finalThreshold = applySafetyConstraints(rawThreshold, sortedSimilarities, kMax, kMin);
-        
-        // 输出调试信息
-        logCalculationDetails(level, stats, rawThreshold, finalThreshold, sortedSimilarities, similarities.size());
-        
-        return finalThreshold;
+        double[] values = new double[similarities.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = similarities.get(i);
+        }
+        return calculateAdaptiveThreshold(values, level, kMax, beta, gamma, kMin, null);
     }
 
     /**
-     * 计算统计量
+     * 计算自适应阈值
+     *
+     * @param similarities 相似度数组，不会被修改
+     * @param level 层级
+     * @param kMax 最大保留节点数
+     * @param beta 权重参数 beta
+     * @param gamma 权重参数 gamma
+     * @param kMin 最小保留节点数
+     * @return 计算得到的阈值
      */
-    private static Statistics calculateStatistics(List<Double> similarities) {
-        DoubleSummaryStatistics summary = similarities.stream()
-                .mapToDouble(Double::doubleValue)
-                .summaryStatistics();
-        
-        double mean = summary.getAverage();
-        double variance = similarities.stream()
-                .mapToDouble(s -> Math.pow(s - mean, 2))
-                .average()
-                .orElse(0.0);
-        
-        double standardDeviation = Math.sqrt(variance);
-        double coefficientOfVariation = mean != 0 ? standardDeviation / mean : 0.0;
-        double normalizedRange = summary.getMax() != 0 ? 
-                (summary.getMax() - summary.getMin()) / summary.getMax() : 0.0;
-        
-        return new Statistics(
-                summary.getMax(),
-                summary.getMin(),
-                mean,
-                standardDeviation,
-                coefficientOfVariation,
-                normalizedRange
-        );
+    public static double calculateAdaptiveThreshold(double[] similarities, int level, int kMax,
+                                                   double beta, double gamma, int kMin) {
+        return calculateAdaptiveThreshold(similarities, level, kMax, beta, gamma, kMin, null);
     }
 
     /**
-     * 计算原始阈值
+     * 计算自适应阈值
+     *
+     * @param similarities 相似度数组，不会被修改
+     * @param level 层级
+     * @param kMax 最大保留节点数
+     * @param beta 权重参数 beta
+     * @param gamma 权重参数 gamma
+     * @param kMin 最小保留节点数
+     * @param scratch 快速选择使用的缓冲区，为null或长度不足时按需创建
+     * @return 计算得到的阈值
      */
-    private static double calculateRawThreshold(Statistics stats, double beta, double gamma) {
-        return beta * stats.max() - (1 - gamma * stats.coefficientOfVariation()) * (stats.max() - stats.mean());
+    public static double calculateAdaptiveThreshold(double[] similarities, int level, int kMax,
+                                                   double beta, double gamma, int kMin, double[] scratch) {
+        if (similarities == null) {
+            return 0.0;
+        }
+        return calculate(similarities, similarities.length, level, kMax, beta, gamma, kMin, scratch, false);
     }
 
     /**
-     * 获取降序排序的相似度列表
+     * 计算自适应阈值，只使用数组的前 length 个元素
+     * 调用方可以复用同一个相似度数组和缓冲区，整个计算过程不分配内存
+     *
+     * @param similarities 相似度数组，不会被修改
+     * @param length 有效元素个数
+     * @param level 层级
+     * @param kMax 最大保留节点数
+     * @param beta 权重参数 beta
+     * @param gamma 权重参数 gamma
+     * @param kMin 最小保留节点数
+     * @param scratch 快速选择使用的缓冲区，为null或长度不足时按需创建
+     * @return 计算得到的阈值
      */
-    private static List<Double> getSortedSimilarities(List<Double> similarities) {
-        return similarities.stream()
-                .sorted((a, b) -> Double.compare(b, a))  // 降序排序
-                .toList();
+    public static double calculateAdaptiveThreshold(double[] similarities, int length, int level, int kMax,
+                                                   double beta, double gamma, int kMin, double[] scratch) {
+        if (similarities == null) {
+            return 0.0;
+        }
+        return calculate(similarities, Math.min(length, similarities.length), level, kMax, beta, gamma, kMin,
+                scratch, false);
     }
 
     /**
-     * 应用安全约束机制
+     * 计算自适应阈值
+     * 先把 float 分数扩展到缓冲区，再在缓冲区上按 double 版本的逻辑计算
+     *
+     * @param similarities 相似度数组，不会被修改
+     * @param level 层级
+     * @param kMax 最大保留节点数
+     * @param beta 权重参数 beta
+     * @param gamma 权重参数 gamma
+     * @param kMin 最小保留节点数
+     * @param scratch 扩展和快速选择使用的缓冲区，为null或长度不足时按需创建
+     * @return 计算得到的阈值
      */
-    private static double applySafetyConstraints(double initialThreshold, List<Double> sortedSimilarities, int kMax, int kMin) {
-        // 计算当前阈值下的节点数量
-        long countAboveThreshold = sortedSimilarities.stream()
-                .mapToLong(s -> s >= initialThreshold ? 1 : 0)
-                .sum();
+    public static double calculateAdaptiveThreshold(float[] similarities, int level, int kMax,
+                                                   double beta, double gamma, int kMin, double[] scratch) {
+        if (similarities == null || similarities.length == 0) {
+            return 0.0;
+        }
+        int n = similarities.length;
+        double[] values = scratch != null && scratch.length >= n ? scratch : new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = similarities[i];
+        }
+        return calculate(values, n, level, kMax, beta, gamma, kMin, values, true);
+    }
 
-        // 确保至少保留 kMin 个节点
-        if (countAboveThreshold < kMin && !sortedSimilarities.isEmpty()) {
-            int index = Math.min(kMin - 1, sortedSimilarities.size() - 1);
-            return sortedSimilarities.get(index);
+    /**
+     * 计算自适应阈值
+     *
+     * 实现思路：
+     * 1. 单次遍历（Welford 算法）同时得到最大值、最小值、平均值和方差
+     * 2. 按统计量计算原始阈值，再单次遍历统计通过阈值的节点数量
+     * 3. 数量在 [kMin, kMax] 范围内时直接返回原始阈值，不需要排序
+     * 4. 否则用快速选择取第 k 大的值作为阈值，不做完整排序；
+     *    values 归本方法所有时直接在其上选择，否则先复制到缓冲区
+     * 5. 传入长度足够的缓冲区时整个计算过程不分配内存，适合树检索中逐层调用
+     *
+     * @param values 相似度数组，只使用前 n 个元素
+     * @param n 有效元素个数
+     * @param owned values 是否可以被打乱顺序
+     */
+    private static double calculate(double[] values, int n, int level, int kMax, double beta, double gamma, int kMin,
+                                    double[] scratch, boolean owned) {
+        if (n <= 0) {
+            return 0.0;
         }
 
+        double max = Double.NEGATIVE_INFINITY;
+        double min = Double.POSITIVE_INFINITY;
+        double mean = 0.0;
+        double m2 = 0.0;
+        for (int i = 0; i < n; i++) {
+            double s = values[i];
+            max = Math.max(max, s);
+            min = Math.min(min, s);
+            double delta = s - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (s - mean);
+        }
+        double standardDeviation = Math.sqrt(m2 / n);
+
+        double rawThreshold = calculateRawThreshold(max, mean, standardDeviation, beta, gamma);
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (values[i] >= rawThreshold) {
+                count++;
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            // 选择之前输出，此时 values 仍是原始顺序
+            log.debug("层级 {} 的相似度数组: {}", level, Arrays.toString(Arrays.copyOf(values, n)));
+        }
+
+        double finalThreshold = rawThreshold;
+        int k = selectionRank(count, n, kMax, kMin);
+        if (k > 0) {
+            double[] work = values;
+            if (!owned) {
+                work = scratch != null && scratch.length >= n ? scratch : new double[n];
+                System.arraycopy(values, 0, work, 0, n);
+            }
+            finalThreshold = kthLargest(work, n, k);
+        }
+
+        if (log.isDebugEnabled()) {
+            logCalculationDetails(level, max, min, mean, standardDeviation, rawThreshold, finalThreshold, count, n);
+        }
+
+        return finalThreshold;
+    }
+
+    /**
+     * 计算原始阈值
+     */
+    private static double calculateRawThreshold(double max, double mean, double standardDeviation,
+                                                double beta, double gamma) {
+        double coefficientOfVariation = mean != 0 ? standardDeviation / mean : 0.0;
+        return beta * max - (1 - gamma * coefficientOfVariation) * (max - mean);
+    }
+
+    /**
+     * 应用安全约束机制，计算需要作为阈值的第 k 大相似度
+     *
+     * @return k（从1开始），返回0表示原始阈值满足约束
+     */
+    private static int selectionRank(int countAboveThreshold, int n, int kMax, int kMin) {
+        // 确保至少保留 kMin 个节点
+        if (countAboveThreshold < kMin) {
+            return Math.min(kMin, n);
+        }
         // 确保至多保留 kMax 个节点
-        countAboveThreshold = sortedSimilarities.stream()
-                .mapToLong(s -> s >= initialThreshold ? 1 : 0)
-                .sum();
-                
         if (countAboveThreshold > kMax && kMax > 0) {
-            return sortedSimilarities.get(kMax - 1);
+            return kMax;
+        }
+        return 0;
+    }
+
+    /**
+     * 快速选择：返回 values 前 n 个元素中第 k 大（从1开始）的值
+     * 会打乱 values 的顺序，平均时间复杂度 O(n)
+     */
+    private static double kthLargest(double[] values, int n, int k) {
+        int target = k - 1;
+        int left = 0;
+        int right = n - 1;
+        while (left < right) {
+            // 三数取中作为枢轴，避免已排序输入退化
+            int mid = (left + right) >>> 1;
+            double pivot = median(values[left], values[mid], values[right]);
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] > pivot) {
+                    i++;
+                }
+                while (values[j] < pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (target <= j) {
+                right = j;
+            } else if (target >= i) {
+                left = i;
+            } else {
+                return values[target];
+            }
         }
+        return values[target];
+    }
 
-        return initialThreshold;
+    private static double median(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
     }
 
     /**
      * 输出计算详情日志
      */
-    private static void logCalculationDetails(int level, Statistics stats, double rawThreshold, 
-                                     double finalThreshold, List<Double> sortedSimilarities, int totalCount) {
-        if (!log.isDebugEnabled()) {
-            return;
-        }
-        
+    private static void logCalculationDetails(int level, double max, double min, double mean, double standardDeviation,
+                                              double rawThreshold, double finalThreshold, int rawCount, int totalCount) {
+        double coefficientOfVariation = mean != 0 ? standardDeviation / mean : 0.0;
+        double normalizedRange = max != 0 ? (max - min) / max : 0.0;
+
         log.debug("层级 {} 的统计指标:", level);
-        log.debug("  最大值: {}, 最小值: {}, 平均值: {}", 
-                String.format("%.4f", stats.max()), 
-                String.format("%.4f", stats.min()), 
-                String.format("%.4f", stats.mean()));
-        log.debug("  标准差: {}, 变异系数: {}, 归一化极差: {}", 
-                String.format("%.4f", stats.standardDeviation()), 
-                String.format("%.4f", stats.coefficientOfVariation()), 
-                String.format("%.4f", stats.normalizedRange()));
+        log.debug("  最大值: {}, 最小值: {}, 平均值: {}",
+                String.format("%.4f", max),
+                String.format("%.4f", min),
+                String.format("%.4f", mean));
+        log.debug("  标准差: {}, 变异系数: {}, 归一化极差: {}",
+                String.format("%.4f", standardDeviation),
+                String.format("%.4f", coefficientOfVariation),
+                String.format("%.4f", normalizedRange));
         log.debug("  原始计算的阈值: {}", String.format("%.4f", rawThreshold));
         log.debug("  应用安全机制后的最终阈值: {}", String.format("%.4f", finalThreshold));
-        
-        // 计算通过阈值的节点数量
-        long passedCount = sortedSimilarities.stream()
-                .mapToLong(s -> s >= finalThreshold ? 1 : 0)
-                .sum();
-        log.debug("  通过阈值的节点数量: {}/{}", passedCount, totalCount);
+        log.debug("  原始阈值下通过的节点数量: {}/{}", rawCount, totalCount);
     }
-
-    /**
-     * 统计量记录类
-     */
-    private record Statistics(
-            double max,
-            double min,
-            double mean,
-            double standardDeviation,
-            double coefficientOfVariation,
-            double normalizedRange
-    ) {}
-}
\ No newline at end of file
+}
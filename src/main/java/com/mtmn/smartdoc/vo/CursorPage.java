@@ -0,0 +1,70 @@
+package com.mtmn.smartdoc.vo;
+
+import com.mtmn.smartdoc.common.KeysetCursor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @author charmingdaidai
+ * @version 1.0
+ * @description 键集分页结果
+ * @date 2025/6/20 10:30
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    // 每页最多条数
+    public static final int MAX_SIZE = 100;
+
+    // 本页数据
+    private List<T> items;
+    // 下一页的游标，没有下一页时为空
+    private String nextCursor;
+    // 是否还有下一页
+    private boolean hasMore;
+
+    /**
+     * 把客户端请求的每页条数限制在 [1, MAX_SIZE] 之间
+     */
+    public static int clampSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_SIZE);
+    }
+
+    /**
+     * 由多查询一条的结果构建分页结果
+     * 查询时取 size + 1 条，多出的一条只用于判断是否还有下一页，不返回给客户端
+     *
+     * @param rows      按 (创建时间, ID) 倒序查询的结果，最多 size + 1 条
+     * @param size      每页条数
+     * @param createdAt 取记录创建时间
+     * @param id        取记录ID
+     * @param mapper    记录到返回对象的转换
+     */
+    public static <R, T> CursorPage<T> of(List<R> rows, int size, Function<R, LocalDateTime> createdAt,
+                                          Function<R, Long> id, Function<R, T> mapper) {
+        boolean hasMore = rows.size() > size;
+        List<R> page = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            R last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(createdAt.apply(last), id.apply(last)).encode();
+        }
+        return new CursorPage<>(page.stream().map(mapper).toList(), nextCursor, hasMore);
+    }
+
+    /**
+     * 转换本页数据，游标不变
+     */
+    public <U> CursorPage<U> map(Function<T, U> mapper) {
+        return new CursorPage<>(items.stream().map(mapper).toList(), nextCursor, hasMore);
+    }
+}
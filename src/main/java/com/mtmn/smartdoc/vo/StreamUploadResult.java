@@ -0,0 +1,39 @@
+package com.mtmn.smartdoc.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author charmingdaidai
+ * @version 1.0
+ * @description 流式上传结果
+ * @date 2025/6/14 10:20
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamUploadResult {
+    // 文档ID
+    private Long documentId;
+    // 文档标题
+    private String title;
+    // 原始文件名
+    private String fileName;
+    // MinIO 中的对象路径
+    private String objectName;
+    // 文件大小（字节）
+    private long size;
+    // 文件内容的 SHA-256（十六进制）
+    private String sha256;
+    // 是否复用了已存储的相同内容
+    private boolean deduplicated;
+    // 分片数量
+    private int partCount;
+    // 上传耗时（毫秒）
+    private long elapsedMs;
+    // 上传吞吐量（MB/s）
+    private double throughputMbPerSecond;
+}
@@ -0,0 +1,37 @@
+package com.mtmn.smartdoc.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author charmingdaidai
+ * @version 1.0
+ * @description 批量上传中单个文件的上传结果
+ * @date 2025/6/15 14:30
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadFileResult {
+    // 文件在请求中的序号（从0开始）
+    private int index;
+    // 原始文件名
+    private String fileName;
+    // 文档标题
+    private String title;
+    // 是否上传成功
+    private boolean success;
+    // 文档ID，上传失败时为空
+    private Long documentId;
+    // 文件大小（字节）
+    private long size;
+    // 是否复用了已存储的相同内容
+    private boolean deduplicated;
+    // 该文件的上传耗时（毫秒）
+    private long elapsedMs;
+    // 失败原因
+    private String message;
+}
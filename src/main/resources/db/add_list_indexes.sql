@@ -0,0 +1,10 @@
+-- 已有数据库升级：列表查询和统计使用的复合索引
+-- 新索引的最左列覆盖原来的单列索引，创建后删除单列索引
+ALTER TABLE `documents`
+  ADD KEY `idx_kb_created_at` (`knowledge_base_id`, `created_at`),
+  ADD KEY `idx_user_created_at` (`user_id`, `created_at`);
+ALTER TABLE `documents` DROP INDEX `idx_knowledge_base_id`;
+
+CREATE INDEX idx_user_activities_user_created ON user_activities(user_id, created_at);
+CREATE INDEX idx_user_activities_user_type ON user_activities(user_id, activity_type);
+DROP INDEX idx_user_activities_user_id ON user_activities;
@@ -5,6 +5,7 @@ CREATE TABLE IF NOT EXISTS `documents` (
   `file_type` varchar(255) NOT NULL,
   `file_size` bigint(20) NOT NULL,
   `file_path` varchar(255) NOT NULL,
+  `content_hash` char(64) DEFAULT NULL COMMENT '文件内容的SHA-256',
   `summary` TEXT DEFAULT NULL,
   `keywords` varchar(2000) DEFAULT NULL,
   `sensitive_info` varchar(2000) DEFAULT NULL,
@@ -15,7 +16,8 @@ CREATE TABLE IF NOT EXISTS `documents` (
   `created_at` datetime DEFAULT NULL,
   `updated_at` datetime DEFAULT NULL,
   PRIMARY KEY (`id`),
-  KEY `FK_documents_user` (`user_id`),
-  KEY `idx_knowledge_base_id` (`knowledge_base_id`),
+  KEY `idx_user_created_at` (`user_id`, `created_at`),
+  KEY `idx_kb_created_at` (`knowledge_base_id`, `created_at`),
+  KEY `idx_content_hash` (`content_hash`),
   CONSTRAINT `FK_documents_user` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
\ No newline at end of file
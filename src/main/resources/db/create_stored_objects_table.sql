@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS `stored_objects` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `content_hash` char(64) NOT NULL COMMENT '文件内容的SHA-256',
+  `file_path` varchar(255) NOT NULL COMMENT 'MinIO中的对象路径',
+  `file_size` bigint(20) NOT NULL,
+  `ref_count` int(11) NOT NULL DEFAULT 0 COMMENT '引用该对象的文档数量',
+  `created_at` datetime DEFAULT NULL,
+  `updated_at` datetime DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_content_hash` (`content_hash`),
+  KEY `idx_file_path` (`file_path`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
@@ -12,6 +12,7 @@ CREATE TABLE IF NOT EXISTS user_activities (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户活动记录表';
 
 -- 添加索引用于快速查询
-CREATE INDEX idx_user_activities_user_id ON user_activities(user_id);
+CREATE INDEX idx_user_activities_user_created ON user_activities(user_id, created_at);
+CREATE INDEX idx_user_activities_user_type ON user_activities(user_id, activity_type);
 CREATE INDEX idx_user_activities_document_id ON user_activities(document_id);
 CREATE INDEX idx_user_activities_created_at ON user_activities(created_at);
\ No newline at end of file
@@ -0,0 +1,11 @@
+-- 创建用户统计表，仪表盘统计数据由文档和分析活动写入时增量更新
+CREATE TABLE IF NOT EXISTS user_statistics (
+  user_id BIGINT NOT NULL PRIMARY KEY,
+  document_count BIGINT NOT NULL DEFAULT 0 COMMENT '文档总数',
+  summary_count BIGINT NOT NULL DEFAULT 0 COMMENT '摘要生成数',
+  keywords_count BIGINT NOT NULL DEFAULT 0 COMMENT '关键词提取数',
+  security_count BIGINT NOT NULL DEFAULT 0 COMMENT '安全检查数',
+  polish_count BIGINT NOT NULL DEFAULT 0 COMMENT '内容润色数',
+  updated_at DATETIME DEFAULT NULL,
+  FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户统计表';
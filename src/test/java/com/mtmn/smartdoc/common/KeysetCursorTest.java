@@ -0,0 +1,46 @@
+package com.mtmn.smartdoc.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeysetCursor单元测试类
+ */
+public class KeysetCursorTest {
+
+    /**
+     * 编码后再解析得到相同的位置，包括秒以下的精度
+     */
+    @Test
+    public void testRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2025, 6, 20, 10, 15, 30, 123_456_000), 42L);
+        String encoded = cursor.encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), "游标应当可以直接放在URL中");
+        assertEquals(cursor, KeysetCursor.decode(encoded));
+    }
+
+    /**
+     * 没有游标表示第一页
+     */
+    @Test
+    public void testBlankCursorIsFirstPage() {
+        assertNull(KeysetCursor.decode(null));
+        assertNull(KeysetCursor.decode(""));
+        assertNull(KeysetCursor.decode("  "));
+    }
+
+    /**
+     * 格式错误的游标返回400错误
+     */
+    @Test
+    public void testInvalidCursor() {
+        for (String invalid : new String[]{"not base64!", "bm8tc2VwYXJhdG9y", "YWJjfDEyMw", "MjAyNS0wNi0yMFQxMDoxNXx4"}) {
+            CustomException e = assertThrows(CustomException.class, () -> KeysetCursor.decode(invalid));
+            assertEquals(400, e.getCode());
+        }
+    }
+}
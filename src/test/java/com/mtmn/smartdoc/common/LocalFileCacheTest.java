@@ -0,0 +1,98 @@
+package com.mtmn.smartdoc.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LocalFileCache单元测试类
+ */
+public class LocalFileCacheTest {
+
+    private static ByteArrayInputStream content(int size) {
+        return new ByteArrayInputStream(new byte[size]);
+    }
+
+    /**
+     * 测试ETag一致时命中，ETag变化时视为过期并删除本地文件
+     */
+    @Test
+    public void testEtagValidation() throws IOException {
+        LocalFileCache cache = new LocalFileCache(Files.createTempDirectory("cache-test"), 1024);
+        LocalFileCache.Entry entry = cache.put("a.pdf", "etag-1", content(100));
+
+        assertTrue(cache.get("a.pdf", "etag-1").isPresent());
+        assertTrue(cache.get("a.pdf", "etag-2").isEmpty());
+        assertFalse(Files.exists(entry.path()));
+        assertEquals(0, cache.getTotalBytes());
+        assertEquals(0.5, cache.getHitRatio());
+    }
+
+    /**
+     * 测试超过容量上限时淘汰最近最少使用的条目
+     */
+    @Test
+    public void testLruEviction() throws IOException {
+        LocalFileCache cache = new LocalFileCache(Files.createTempDirectory("cache-test"), 250);
+        Path a = cache.put("a", "1", content(100)).path();
+        cache.put("b", "1", content(100));
+        // 访问 a，使 b 成为最久未使用的条目
+        assertTrue(cache.get("a", "1").isPresent());
+        cache.put("c", "1", content(100));
+
+        assertTrue(cache.get("b", "1").isEmpty());
+        assertTrue(cache.get("a", "1").isPresent());
+        assertTrue(Files.exists(a));
+        assertEquals(200, cache.getTotalBytes());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    /**
+     * 测试按前缀失效
+     */
+    @Test
+    public void testInvalidatePrefix() throws IOException {
+        LocalFileCache cache = new LocalFileCache(Files.createTempDirectory("cache-test"), 1024);
+        cache.put("derived/x/1", "1", content(10));
+        cache.put("derived/x/2", "1", content(10));
+        cache.put("2025/01/01/doc.pdf", "1", content(10));
+
+        cache.invalidatePrefix("derived/x/");
+
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(10, cache.getTotalBytes());
+    }
+
+    /**
+     * 测试重启后从磁盘重建索引，残缺的文件被清理，超出新上限的旧条目被淘汰
+     */
+    @Test
+    public void testRebuildFromDisk() throws IOException {
+        Path directory = Files.createTempDirectory("cache-test");
+        LocalFileCache cache = new LocalFileCache(directory, 1024);
+        Path a = cache.put("a", "1", content(100)).path();
+        Files.setLastModifiedTime(a, FileTime.fromMillis(1_000));
+        cache.put("2025/01/01/b.pdf", "2", content(200));
+        Path partial = Files.createFile(directory.resolve("tmp-1.part"));
+        Path orphan = Files.createFile(directory.resolve("orphan.bin"));
+
+        LocalFileCache restored = new LocalFileCache(directory, 1024);
+        assertEquals(2, restored.getEntryCount());
+        assertEquals(300, restored.getTotalBytes());
+        assertEquals(200, restored.get("2025/01/01/b.pdf").orElseThrow().size());
+        assertTrue(restored.get("a", "1").isPresent());
+        assertFalse(Files.exists(partial));
+        assertFalse(Files.exists(orphan));
+
+        LocalFileCache shrunk = new LocalFileCache(directory, 250);
+        assertTrue(shrunk.get("a").isEmpty());
+        assertFalse(Files.exists(a));
+        assertEquals(200, shrunk.getTotalBytes());
+    }
+}
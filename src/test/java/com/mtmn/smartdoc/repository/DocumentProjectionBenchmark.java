@@ -0,0 +1,238 @@
+package com.mtmn.smartdoc.repository;
+
+import com.mtmn.smartdoc.dto.DocumentListItem;
+import com.mtmn.smartdoc.po.DocumentPO;
+import com.mtmn.smartdoc.po.User;
+import com.mtmn.smartdoc.vo.DocumentVO;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.log4j.Log4j2;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识库文档列表查询基准测试
+ * 在嵌入式 H2 数据库上通过 Spring Data JPA 执行真实的仓库查询，对比加载完整 DocumentPO 实体
+ * （findByKnowledgeBaseIdOrderByCreatedAtDesc）与 DocumentListItem 投影（findListItemsByKnowledgeBaseId）。
+ * 每次调用在一个事务中完成查询和 VO 转换，对应一次列表请求的持久化上下文。
+ * 直接运行 main 方法即可：GC 分析器输出的 gc.alloc.rate.norm 即每次请求分配的字节数；
+ * 每轮迭代结束时通过日志输出 Hibernate 统计的每次请求加载实体数，启动时输出两种查询读取的文本列字节数
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/20 15:10
+ */
+@Log4j2
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DocumentProjectionBenchmark {
+
+    private static final long KNOWLEDGE_BASE_ID = 1L;
+
+    @Param({"20", "200", "2000"})
+    private int rows;
+
+    private AnnotationConfigApplicationContext context;
+    private DocumentRepository documentRepository;
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new AnnotationConfigApplicationContext(JpaConfig.class);
+        documentRepository = context.getBean(DocumentRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        Random random = new Random(42);
+        List<DocumentPO> documents = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            // 已分析过的文档：摘要、关键词、敏感信息接近列的长度上限
+            documents.add(DocumentPO.builder()
+                    .title("项目文档-" + i)
+                    .fileName("document-" + i + ".pdf")
+                    .fileType("application/pdf")
+                    .fileSize(100_000L + random.nextInt(10_000_000))
+                    .filePath("documents/" + Integer.toHexString(random.nextInt()) + "/document-" + i + ".pdf")
+                    .contentHash("%064x".formatted(random.nextLong() & Long.MAX_VALUE))
+                    .summary(text(random, 1000))
+                    .keywords(text(random, 200))
+                    .sensitiveInfo(text(random, 1500))
+                    .categories(text(random, 50))
+                    .knowledgeBaseId(KNOWLEDGE_BASE_ID)
+                    .indexed(true)
+                    .build());
+        }
+        transactionTemplate.executeWithoutResult(status -> documentRepository.saveAll(documents));
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+        Long entityBytes = jdbcTemplate.queryForObject("SELECT SUM(" + octetLength("title", "file_name", "file_type",
+                "file_path", "content_hash", "summary", "keywords", "sensitive_info", "categories") +
+                ") FROM documents WHERE knowledge_base_id = ?", Long.class, KNOWLEDGE_BASE_ID);
+        Long projectionBytes = jdbcTemplate.queryForObject("SELECT SUM(" + octetLength("title", "file_name",
+                "file_type", "file_path") + ") FROM documents WHERE knowledge_base_id = ?", Long.class, KNOWLEDGE_BASE_ID);
+        log.info("每次请求 {} 行，读取的文本列字节数：完整实体 {}，投影 {}", rows, entityBytes, projectionBytes);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportStatistics(BenchmarkParams params) {
+        long queries = Math.max(1, statistics.getQueryExecutionCount());
+        log.info("{} rows={}：每次请求加载实体 {} 个，查询 {} 次",
+                params.getBenchmark(), rows, statistics.getEntityLoadCount() / queries, queries);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 加载完整实体后转换为 VO（修改前的实现）
+     */
+    @Benchmark
+    public List<DocumentVO> entity() {
+        return transactionTemplate.execute(status ->
+                documentRepository.findByKnowledgeBaseIdOrderByCreatedAtDesc(KNOWLEDGE_BASE_ID).stream()
+                        .map(document -> DocumentVO.builder()
+                                .id(document.getId())
+                                .title(document.getTitle())
+                                .fileName(document.getFileName())
+                                .indexed(document.getIndexed())
+                                .fileType(document.getFileType())
+                                .fileSize(document.getFileSize())
+                                .fileUrl(document.getFilePath())
+                                .createdAt(document.getCreatedAt())
+                                .updatedAt(document.getUpdatedAt())
+                                .build())
+                        .toList());
+    }
+
+    /**
+     * 只查询列表需要的列，构造投影后转换为 VO
+     */
+    @Benchmark
+    public List<DocumentVO> projection() {
+        return transactionTemplate.execute(status ->
+                documentRepository.findListItemsByKnowledgeBaseId(KNOWLEDGE_BASE_ID).stream()
+                        .map(DocumentProjectionBenchmark::toDocumentVO)
+                        .toList());
+    }
+
+    private static DocumentVO toDocumentVO(DocumentListItem item) {
+        return DocumentVO.builder()
+                .id(item.id())
+                .title(item.title())
+                .fileName(item.fileName())
+                .indexed(item.indexed())
+                .fileType(item.fileType())
+                .fileSize(item.fileSize())
+                .fileUrl(item.filePath())
+                .createdAt(item.createdAt())
+                .updatedAt(item.updatedAt())
+                .build();
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('一' + random.nextInt(2000)));
+        }
+        return builder.toString();
+    }
+
+    private static String octetLength(String... columns) {
+        List<String> terms = new ArrayList<>(columns.length);
+        for (String column : columns) {
+            terms.add("COALESCE(OCTET_LENGTH(" + column + "), 0)");
+        }
+        return String.join(" + ", terms);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DocumentProjectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * 只包含文档仓库的最小 JPA 上下文，列名映射与 Spring Boot 默认的命名策略一致
+     */
+    @Configuration
+    @EnableJpaRepositories(basePackageClasses = DocumentRepository.class, includeFilters =
+            @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = DocumentRepository.class))
+    static class JpaConfig {
+
+        @Bean(destroyMethod = "shutdown")
+        public DataSource dataSource() {
+            return new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .build();
+        }
+
+        @Bean
+        public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setManagedTypes(PersistenceManagedTypes.of(DocumentPO.class.getName(), User.class.getName()));
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(Map.of(
+                    AvailableSettings.HBM2DDL_AUTO, "create",
+                    AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                    AvailableSettings.GENERATE_STATISTICS, true,
+                    AvailableSettings.USE_SECOND_LEVEL_CACHE, false));
+            return factory;
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+
+        @Bean
+        public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+            return new TransactionTemplate(transactionManager);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.mtmn.smartdoc.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mtmn.smartdoc.service.AuthCodeStore;
+import com.mtmn.smartdoc.vo.AuthenticationResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * AuthCodeStore单元测试类
+ * Redis 实现使用基于内存 Map 的替身，不需要真实的 Redis 服务
+ */
+public class AuthCodeStoreTest {
+
+    private static final Duration TTL = Duration.ofSeconds(120);
+
+    private static AuthenticationResponse response(String token) {
+        return AuthenticationResponse.builder().accessToken(token).refreshToken("refresh-" + token).build();
+    }
+
+    /**
+     * 两种实现共同遵守的约定：取出一次后删除
+     */
+    private static void assertOneTimeUse(AuthCodeStore store) {
+        store.put("code-1", response("a"), TTL);
+
+        assertEquals(response("a"), store.take("code-1").orElseThrow());
+        assertTrue(store.take("code-1").isEmpty());
+        assertTrue(store.take("unknown").isEmpty());
+    }
+
+    /**
+     * 测试内存实现的一次性使用
+     */
+    @Test
+    public void testInMemoryOneTimeUse() {
+        assertOneTimeUse(new InMemoryAuthCodeStore());
+    }
+
+    /**
+     * 测试内存实现按过期队列清理过期授权码
+     */
+    @Test
+    public void testInMemoryExpiry() {
+        AtomicLong clock = new AtomicLong();
+        InMemoryAuthCodeStore store = new InMemoryAuthCodeStore(clock::get);
+        store.put("old", response("old"), TTL);
+        clock.addAndGet(TTL.toNanos() / 2);
+        store.put("new", response("new"), TTL);
+
+        clock.addAndGet(TTL.toNanos() / 2);
+        assertTrue(store.take("old").isEmpty());
+        assertEquals(1, store.size());
+
+        // 写入新的授权码时顺带清理已过期的条目
+        clock.addAndGet(TTL.toNanos());
+        store.put("latest", response("latest"), TTL);
+        assertEquals(1, store.size());
+        assertTrue(store.take("latest").isPresent());
+    }
+
+    /**
+     * 测试 Redis 实现的一次性使用
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisOneTimeUse() {
+        Map<String, String> redis = new HashMap<>();
+        ValueOperations<String, String> operations = mock(ValueOperations.class);
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(operations).set(anyString(), anyString(), any(Duration.class));
+        when(operations.getAndDelete(anyString())).thenAnswer(invocation -> redis.remove(invocation.<String>getArgument(0)));
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(operations);
+
+        RedisAuthCodeStore store = new RedisAuthCodeStore(redisTemplate, new ObjectMapper());
+        assertOneTimeUse(store);
+        verify(operations).set(eq("smartdoc:auth-code:code-1"), anyString(), eq(TTL));
+    }
+}
@@ -0,0 +1,81 @@
+package com.mtmn.smartdoc.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContextPacker单元测试类
+ */
+public class ContextPackerTest {
+
+    private static final String CHUNK_A = "Milvus 是一个开源的向量数据库，支持海量向量的相似度检索，常用于检索增强生成系统中存储文档片段的嵌入向量。";
+    private static final String CHUNK_B = "MinIO 是兼容 S3 协议的对象存储服务，本系统使用它保存用户上传的原始文档文件以及头像等静态资源。";
+
+    /**
+     * 测试完全重复和被包含的片段会被移除
+     */
+    @Test
+    public void testRemoveDuplicates() {
+        List<String> chunks = List.of(CHUNK_A, CHUNK_A, CHUNK_B, CHUNK_B.substring(0, 20));
+
+        ContextPacker.PackedContext packed = ContextPacker.pack(chunks, 10000, 3);
+
+        assertEquals(List.of(CHUNK_A, CHUNK_B), packed.chunks());
+        assertEquals(2, packed.duplicateCount());
+        assertTrue(packed.tokensSaved() > 0);
+        assertTrue(packed.context().startsWith("【片段1】\n" + CHUNK_A));
+        assertTrue(packed.context().contains("【片段2】\n" + CHUNK_B));
+    }
+
+    /**
+     * 测试近似重复（仅有个别字符不同）的片段会被移除
+     */
+    @Test
+    public void testRemoveNearDuplicates() {
+        String chunk = CHUNK_A + CHUNK_B;
+        String nearDuplicate = chunk.replace("海量", "大量");
+
+        ContextPacker.PackedContext packed = ContextPacker.pack(List.of(chunk, nearDuplicate), 10000, 3);
+
+        assertEquals(List.of(chunk), packed.chunks());
+        assertEquals(1, packed.duplicateCount());
+    }
+
+    /**
+     * 测试超出预算的片段被跳过，且保持相关度顺序
+     */
+    @Test
+    public void testTokenBudget() {
+        int budget = ContextPacker.estimateTokens(CHUNK_A) + 5;
+
+        ContextPacker.PackedContext packed = ContextPacker.pack(List.of(CHUNK_A, CHUNK_B, "短片段"), budget, 3);
+
+        assertEquals(List.of(CHUNK_A, "短片段"), packed.chunks());
+        assertEquals(1, packed.overBudgetCount());
+        assertTrue(packed.packedTokens() <= budget);
+    }
+
+    /**
+     * 测试第一个片段超过预算时按预算截断
+     */
+    @Test
+    public void testTruncateFirstChunk() {
+        ContextPacker.PackedContext packed = ContextPacker.pack(List.of(CHUNK_A), 10, 3);
+
+        assertEquals(1, packed.chunks().size());
+        assertTrue(ContextPacker.estimateTokens(packed.chunks().get(0)) <= 10);
+    }
+
+    /**
+     * 测试token估算：中文按字计算，英文约4个字符一个token
+     */
+    @Test
+    public void testEstimateTokens() {
+        assertEquals(4, ContextPacker.estimateTokens("向量检索"));
+        assertEquals(2, ContextPacker.estimateTokens("abcdefgh"));
+        assertEquals(0, ContextPacker.estimateTokens(""));
+    }
+}
@@ -0,0 +1,80 @@
+package com.mtmn.smartdoc.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThresholdCalculator 基准测试
+ * 对比 List&lt;Double&gt; 版本与 double[] / float[] 版本在不同候选数量下的耗时和内存分配，
+ * 直接运行 main 方法即可（GC 分析器输出 gc.alloc.rate.norm 即每次调用分配的字节数）
+ *
+ * @author charmingdaidai
+ * @version 1.0
+ * @date 2025/6/12 16:20
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThresholdCalculatorBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    private int size;
+
+    private List<Double> list;
+    private double[] doubles;
+    private float[] floats;
+    private double[] scratch;
+    private int kMax;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        doubles = new double[size];
+        floats = new float[size];
+        for (int i = 0; i < size; i++) {
+            // 模拟余弦相似度：大部分候选集中在中低分段，少量高分
+            double score = Math.min(1.0, Math.abs(random.nextGaussian() * 0.15 + 0.4));
+            doubles[i] = score;
+            floats[i] = (float) score;
+        }
+        list = Arrays.stream(doubles).boxed().toList();
+        scratch = new double[size];
+        // kMax 较小时会触发快速选择分支
+        kMax = Math.max(1, size / 20);
+    }
+
+    @Benchmark
+    public double list() {
+        return ThresholdCalculator.calculateAdaptiveThreshold(list, 1, kMax, 1, 0.7, 1);
+    }
+
+    @Benchmark
+    public double doubleArray() {
+        return ThresholdCalculator.calculateAdaptiveThreshold(doubles, 1, kMax, 1, 0.7, 1, scratch);
+    }
+
+    @Benchmark
+    public double floatArray() {
+        return ThresholdCalculator.calculateAdaptiveThreshold(floats, 1, kMax, 1, 0.7, 1, scratch);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ThresholdCalculatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.mtmn.smartdoc.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ThresholdCalculator单元测试类
+ */
+public class ThresholdCalculatorTest {
+
+    /**
+     * 测试数组版本与按完整排序实现的参考结果一致
+     */
+    @Test
+    public void testMatchesSortedReference() {
+        Random random = new Random(42);
+        double[] scratch = new double[1000];
+        for (int round = 0; round < 500; round++) {
+            int n = 1 + random.nextInt(1000);
+            double[] similarities = new double[n];
+            for (int i = 0; i < n; i++) {
+                // 加入重复值，覆盖快速选择中与枢轴相等的情况
+                similarities[i] = Math.round(random.nextDouble() * 100) / 100.0;
+            }
+            int kMax = random.nextInt(n + 1);
+            int kMin = random.nextInt(5);
+            double gamma = random.nextDouble();
+
+            double expected = reference(similarities, kMax, 1, gamma, kMin);
+            double[] copy = similarities.clone();
+
+            assertEquals(expected, ThresholdCalculator.calculateAdaptiveThreshold(similarities, 1, kMax, 1, gamma, kMin, scratch), 1e-9);
+            assertEquals(expected, ThresholdCalculator.calculateAdaptiveThreshold(similarities, 1, kMax, 1, gamma, kMin), 1e-9);
+            assertArrayEquals(copy, similarities);
+        }
+    }
+
+    /**
+     * 测试 List 和 float[] 版本结果一致
+     */
+    @Test
+    public void testOverloadsAgree() {
+        float[] floats = {0.91f, 0.88f, 0.52f, 0.47f, 0.45f, 0.44f, 0.30f};
+        double[] doubles = new double[floats.length];
+        for (int i = 0; i < floats.length; i++) {
+            doubles[i] = floats[i];
+        }
+        List<Double> list = Arrays.stream(doubles).boxed().toList();
+
+        double expected = ThresholdCalculator.calculateAdaptiveThreshold(doubles, 1, 3, 1, 0.7, 1);
+        assertEquals(expected, ThresholdCalculator.calculateAdaptiveThreshold(list, 1, 3, 1, 0.7, 1), 1e-12);
+        assertEquals(expected, ThresholdCalculator.calculateAdaptiveThreshold(floats, 1, 3, 1, 0.7, 1, null), 1e-12);
+
+        // 复用的数组只有前 length 个元素有效，其余位置的值不影响结果
+        double[] reused = Arrays.copyOf(doubles, doubles.length + 3);
+        Arrays.fill(reused, doubles.length, reused.length, 0.99);
+        assertEquals(expected, ThresholdCalculator.calculateAdaptiveThreshold(reused, doubles.length, 1, 3, 1, 0.7, 1,
+                new double[reused.length]), 1e-12);
+    }
+
+    /**
+     * 测试 kMin / kMax 安全约束
+     */
+    @Test
+    public void testSafetyConstraints() {
+        double[] uniform = {0.5, 0.5, 0.5, 0.5};
+        // 所有相似度相同，原始阈值等于该值，全部通过，受 kMax 约束后仍为该值
+        assertEquals(0.5, ThresholdCalculator.calculateAdaptiveThreshold(uniform, 1, 2, 1, 0.7, 1), 1e-12);
+
+        double[] spread = {0.9, 0.8, 0.7, 0.6, 0.5};
+        // beta 很大时原始阈值高于最大值，kMin 保证至少保留前3个
+        assertEquals(0.7, ThresholdCalculator.calculateAdaptiveThreshold(spread, 1, 5, 2, 0.7, 3), 1e-12);
+        // beta 为0时全部通过，kMax 限制为前2个
+        assertEquals(0.8, ThresholdCalculator.calculateAdaptiveThreshold(spread, 1, 2, 0, 0.7, 1), 1e-12);
+
+        assertEquals(0.0, ThresholdCalculator.calculateAdaptiveThreshold(new double[0], 1, 2, 1, 0.7, 1), 1e-12);
+    }
+
+    /**
+     * 原实现：两遍统计加完整排序
+     */
+    private static double reference(double[] similarities, int kMax, double beta, double gamma, int kMin) {
+        double max = Arrays.stream(similarities).max().orElse(0);
+        double mean = Arrays.stream(similarities).average().orElse(0);
+        double variance = Arrays.stream(similarities).map(s -> Math.pow(s - mean, 2)).average().orElse(0);
+        double cv = mean != 0 ? Math.sqrt(variance) / mean : 0.0;
+        double raw = beta * max - (1 - gamma * cv) * (max - mean);
+
+        double[] sorted = Arrays.stream(similarities).boxed()
+                .sorted((a, b) -> Double.compare(b, a))
+                .mapToDouble(Double::doubleValue)
+                .toArray();
+        long count = Arrays.stream(sorted).filter(s -> s >= raw).count();
+        if (count < kMin) {
+            return sorted[Math.min(kMin - 1, sorted.length - 1)];
+        }
+        if (count > kMax && kMax > 0) {
+            return sorted[kMax - 1];
+        }
+        return raw;
+    }
+}